@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Optional interface implemented by {@link MailingListConnector}s which are able to execute operations without
+ * blocking the calling thread. Connectors which don't implement it are called from a dedicated executor.
+ * <p>
+ * The returned futures are completed exceptionally with a {@link MailingListException} in case of failure.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public interface MailingListAsyncConnector
+{
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @param email the address to add
+     * @return the future completed when the member is added
+     */
+    CompletableFuture<Void> addAsync(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        String email);
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @param email the address to remove
+     * @return the future completed when the member is removed
+     */
+    CompletableFuture<Void> deleteAsync(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        String email);
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @return the future completed with the members of the mailing list
+     */
+    CompletableFuture<List<String>> getMembersAsync(MailingListProfileConfiguration profileConfiguration,
+        String mailingList);
+}
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Report of a bulk operation: which addresses were successfully processed and which failed (and why).
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListBulkResult
+{
+    private final List<String> succeeded = new ArrayList<>();
+
+    private final Map<String, MailingListException> failed = new LinkedHashMap<>();
+
+    /**
+     * @param email the address which was successfully processed
+     */
+    public void addSuccess(String email)
+    {
+        this.succeeded.add(email);
+    }
+
+    /**
+     * @param email the address which could not be processed
+     * @param cause the reason of the failure
+     */
+    public void addFailure(String email, MailingListException cause)
+    {
+        this.failed.put(email, cause);
+    }
+
+    /**
+     * @param result another result to merge into this one
+     */
+    public void addAll(MailingListBulkResult result)
+    {
+        this.succeeded.addAll(result.succeeded);
+        this.failed.putAll(result.failed);
+    }
+
+    /**
+     * @return the addresses which were successfully processed, in the order they were provided
+     */
+    public List<String> getSucceeded()
+    {
+        return Collections.unmodifiableList(this.succeeded);
+    }
+
+    /**
+     * @return the addresses which could not be processed associated to the reason of the failure
+     */
+    public Map<String, MailingListException> getFailed()
+    {
+        return Collections.unmodifiableMap(this.failed);
+    }
+
+    /**
+     * @return true if all the addresses were successfully processed
+     */
+    public boolean isSuccess()
+    {
+        return this.failed.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "succeeded: " + this.succeeded.size() + ", failed: " + this.failed.keySet();
+    }
+}
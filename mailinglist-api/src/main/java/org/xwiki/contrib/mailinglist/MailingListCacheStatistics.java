@@ -0,0 +1,140 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Statistics of the mailing list members cache.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListCacheStatistics
+{
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final int size;
+
+    private final Map<String, Long> memoryUsage;
+
+    /**
+     * @param hits the number of requests served from the cache
+     * @param misses the number of requests which had to call the connector
+     * @param evictions the number of entries removed to make room for new ones
+     * @param size the current number of entries
+     */
+    public MailingListCacheStatistics(long hits, long misses, long evictions, int size)
+    {
+        this(hits, misses, evictions, size, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param hits the number of requests served from the cache
+     * @param misses the number of requests which had to call the connector
+     * @param evictions the number of entries removed to make room for new ones
+     * @param size the current number of entries
+     * @param memoryUsage the estimated number of bytes used by each cached list (the key is
+     *            {@code <profile>/<mailing list>})
+     */
+    public MailingListCacheStatistics(long hits, long misses, long evictions, int size, Map<String, Long> memoryUsage)
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.memoryUsage = Collections.unmodifiableMap(memoryUsage);
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of requests which had to call the connector
+     */
+    public long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * @return the ratio of requests served from the cache (between 0 and 1)
+     */
+    public double getHitRatio()
+    {
+        long requests = this.hits + this.misses;
+
+        return requests > 0 ? (double) this.hits / requests : 0;
+    }
+
+    /**
+     * @return the number of entries removed to make room for new ones
+     */
+    public long getEvictions()
+    {
+        return this.evictions;
+    }
+
+    /**
+     * @return the current number of entries
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the estimated number of bytes used by each cached list (the key is {@code <profile>/<mailing list>})
+     */
+    public Map<String, Long> getListMemoryUsage()
+    {
+        return this.memoryUsage;
+    }
+
+    /**
+     * @return the estimated number of bytes used by all the cached lists
+     */
+    public long getMemoryUsage()
+    {
+        long total = 0;
+        for (long listMemoryUsage : this.memoryUsage.values()) {
+            total += listMemoryUsage;
+        }
+
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "hits: " + this.hits + ", misses: " + this.misses + ", evictions: " + this.evictions + ", size: "
+            + this.size + ", memory: " + getMemoryUsage();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+/**
+ * State of the circuit breaker and bulkhead protecting the connector of a profile.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListCircuitBreakerStatus
+{
+    /**
+     * The possible states of a circuit breaker.
+     * 
+     * @version $Id$
+     */
+    public enum State
+    {
+        /**
+         * The calls go through.
+         */
+        CLOSED,
+
+        /**
+         * The calls fail immediately because the connector failed too often recently.
+         */
+        OPEN,
+
+        /**
+         * A few calls go through to check if the connector recovered.
+         */
+        HALF_OPEN
+    }
+
+    private final String profile;
+
+    private final State state;
+
+    private final double failureRate;
+
+    private final int recordedCalls;
+
+    private final int activeCalls;
+
+    private final int maxConcurrentCalls;
+
+    private final long rejectedCalls;
+
+    /**
+     * @param profile the profile
+     * @param state the state of the circuit breaker
+     * @param failureRate the ratio of failed calls among the recorded ones (between 0 and 1)
+     * @param recordedCalls the number of recent calls taken into account to compute the failure rate
+     * @param activeCalls the number of calls in progress
+     * @param maxConcurrentCalls the maximum number of calls in progress, 0 if unlimited
+     * @param rejectedCalls the total number of calls rejected by the circuit breaker or the bulkhead
+     */
+    public MailingListCircuitBreakerStatus(String profile, State state, double failureRate, int recordedCalls,
+        int activeCalls, int maxConcurrentCalls, long rejectedCalls)
+    {
+        this.profile = profile;
+        this.state = state;
+        this.failureRate = failureRate;
+        this.recordedCalls = recordedCalls;
+        this.activeCalls = activeCalls;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.rejectedCalls = rejectedCalls;
+    }
+
+    /**
+     * @return the profile
+     */
+    public String getProfile()
+    {
+        return this.profile;
+    }
+
+    /**
+     * @return the state of the circuit breaker
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return the ratio of failed calls among the recorded ones (between 0 and 1)
+     */
+    public double getFailureRate()
+    {
+        return this.failureRate;
+    }
+
+    /**
+     * @return the number of recent calls taken into account to compute the failure rate
+     */
+    public int getRecordedCalls()
+    {
+        return this.recordedCalls;
+    }
+
+    /**
+     * @return the number of calls in progress
+     */
+    public int getActiveCalls()
+    {
+        return this.activeCalls;
+    }
+
+    /**
+     * @return the maximum number of calls in progress, 0 if unlimited
+     */
+    public int getMaxConcurrentCalls()
+    {
+        return this.maxConcurrentCalls;
+    }
+
+    /**
+     * @return the total number of calls rejected by the circuit breaker or the bulkhead
+     */
+    public long getRejectedCalls()
+    {
+        return this.rejectedCalls;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "profile: " + this.profile + ", state: " + this.state + ", failure rate: " + this.failureRate
+            + ", recorded calls: " + this.recordedCalls + ", active calls: " + this.activeCalls
+            + ", max concurrent calls: " + this.maxConcurrentCalls + ", rejected calls: " + this.rejectedCalls;
+    }
+}
@@ -19,20 +19,116 @@
  */
 package org.xwiki.contrib.mailinglist;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Predicate;
 
 import org.xwiki.component.annotation.Role;
 
 /**
+ * Failures which may go away when the operation is retried later (network errors, timeouts, server errors) should be
+ * reported with a {@link MailingListTransientException} (or a {@link MailingListThrottledException} when the service
+ * rejected the call because of its rate limit). Any other {@link MailingListException} is considered permanent and is
+ * never retried.
+ * 
  * @version $Id$
  */
 @Role
 public interface MailingListConnector
 {
-    void add(Map<String, String> profileConfiguration, String mailingList, String email) throws MailingListException;
+    /**
+     * The maximum number of requests a single operation of the connector (bulk operations for example) may send at the
+     * same time.
+     */
+    String PROPERTY_CONCURRENCY = "concurrency";
 
-    void delete(Map<String, String> profileConfiguration, String mailingList, String email) throws MailingListException;
+    /**
+     * The default value of {@link #PROPERTY_CONCURRENCY}.
+     */
+    int DEFAULT_CONCURRENCY = 8;
 
-    List<String> getMembers(Map<String, String> profileConfiguration, String mailingList) throws MailingListException;
+    void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+        throws MailingListException;
+
+    void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+        throws MailingListException;
+
+    List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
+        throws MailingListException;
+
+    /**
+     * Call the passed consumer for each member of the mailing list, without keeping the whole list in memory when the
+     * connector is able to read the members incrementally. The default implementation iterates over the result of
+     * {@link #getMembers(MailingListProfileConfiguration, String)}.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @param consumer called with each member, returns false to stop the iteration
+     * @throws MailingListException when failing to get the members
+     * @since 1.1
+     */
+    default void forEachMember(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Predicate<String> consumer) throws MailingListException
+    {
+        for (String member : getMembers(profileConfiguration, mailingList)) {
+            if (!consumer.test(member)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Add several members to the mailing list. The default implementation calls {@link #add} for each address.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @param emails the addresses to add
+     * @return the result for each address
+     * @since 1.1
+     */
+    default MailingListBulkResult addAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        MailingListBulkResult result = new MailingListBulkResult();
+
+        for (String email : emails) {
+            try {
+                add(profileConfiguration, mailingList, email);
+
+                result.addSuccess(email);
+            } catch (MailingListException e) {
+                result.addFailure(email, e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove several members from the mailing list. The default implementation calls {@link #delete} for each
+     * address.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     * @param mailingList the mailing list
+     * @param emails the addresses to remove
+     * @return the result for each address
+     * @since 1.1
+     */
+    default MailingListBulkResult deleteAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        MailingListBulkResult result = new MailingListBulkResult();
+
+        for (String email : emails) {
+            try {
+                delete(profileConfiguration, mailingList, email);
+
+                result.addSuccess(email);
+            } catch (MailingListException e) {
+                result.addFailure(email, e);
+            }
+        }
+
+        return result;
+    }
 }
@@ -19,7 +19,11 @@
  */
 package org.xwiki.contrib.mailinglist;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import org.xwiki.component.annotation.Role;
 
@@ -34,4 +38,177 @@ public interface MailingListManager
     void delete(String profile, String mailingList, String email) throws MailingListException;
 
     List<String> getMembers(String profile, String mailingList) throws MailingListException;
+
+    /**
+     * Check if an address is a member of a mailing list. When the members of the profile are cached (see the
+     * {@code mailinglist.<profile>.membersCacheTTL} property, disabled by default), the answer comes from an in-memory
+     * index of the members: the connector is called only the first time a list is checked and the expired lists are
+     * reloaded.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param email the address to look for (the case and surrounding whitespaces are ignored)
+     * @return true if the address is a member of the mailing list
+     * @throws MailingListException when failing to get the members
+     * @since 1.1
+     */
+    boolean isMember(String profile, String mailingList, String email) throws MailingListException;
+
+    /**
+     * Find the mailing lists an address is a member of, across all profiles. The answer comes from an in-memory index
+     * which covers the lists declared in the {@code mailinglist.<profile>.lists} property (comma separated addresses)
+     * of each profile, plus the lists whose members were loaded. The declared lists are loaded (in parallel) the first
+     * time, then periodically reloaded in the background.
+     * 
+     * @param email the address to look for (the case and surrounding whitespaces are ignored)
+     * @return the mailing lists the address is a member of, indexed by profile
+     * @throws MailingListException when failing to load the members of some of the declared lists
+     * @since 1.1
+     */
+    Map<String, List<String>> getListsForMember(String email) throws MailingListException;
+
+    /**
+     * Call the passed consumer for each member of the mailing list. Unless the members of the profile are cached, they
+     * are read incrementally from the connector (when it supports it) instead of being loaded in memory all at once.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param consumer called with each member, returns false to stop the iteration
+     * @throws MailingListException when failing to get the members
+     * @since 1.1
+     */
+    void forEachMember(String profile, String mailingList, Predicate<String> consumer) throws MailingListException;
+
+    /**
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param offset the index of the first member to return
+     * @param limit the maximum number of members to return
+     * @return the members of the mailing list between {@code offset} and {@code offset + limit}
+     * @throws MailingListException when failing to get the members
+     * @since 1.1
+     */
+    List<String> getMembers(String profile, String mailingList, int offset, int limit) throws MailingListException;
+
+    /**
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param emails the addresses to add
+     * @return the result for each address
+     * @throws MailingListException when failing to find the connector associated to the profile
+     * @since 1.1
+     */
+    MailingListBulkResult addAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException;
+
+    /**
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param emails the addresses to remove
+     * @return the result for each address
+     * @throws MailingListException when failing to find the connector associated to the profile
+     * @since 1.1
+     */
+    MailingListBulkResult deleteAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException;
+
+    /**
+     * Make the members of the mailing list match the provided addresses, adding and removing only what's needed.
+     * Addresses are compared ignoring case and surrounding whitespaces.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param members the addresses which should be members of the mailing list
+     * @param dryRun true to only compute the changes without applying them
+     * @return the summary of the changes
+     * @throws MailingListException when failing to get the current members of the mailing list
+     * @since 1.1
+     */
+    MailingListSyncResult sync(String profile, String mailingList, Collection<String> members, boolean dryRun)
+        throws MailingListException;
+
+    /**
+     * Asynchronous version of {@link #add(String, String, String)}.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param email the address to add
+     * @return the future completed when the member is added, or completed exceptionally with a
+     *         {@link MailingListException}
+     * @since 1.1
+     */
+    CompletableFuture<Void> addAsync(String profile, String mailingList, String email);
+
+    /**
+     * Asynchronous version of {@link #delete(String, String, String)}.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @param email the address to remove
+     * @return the future completed when the member is removed, or completed exceptionally with a
+     *         {@link MailingListException}
+     * @since 1.1
+     */
+    CompletableFuture<Void> deleteAsync(String profile, String mailingList, String email);
+
+    /**
+     * Asynchronous version of {@link #getMembers(String, String)}.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @return the future completed with the members of the mailing list, or completed exceptionally with a
+     *         {@link MailingListException}
+     * @since 1.1
+     */
+    CompletableFuture<List<String>> getMembersAsync(String profile, String mailingList);
+
+    /**
+     * Keep the members of a mailing list loaded: they are reloaded in the background before they expire from the
+     * cache and the last known members are returned while a reload is in progress, so that
+     * {@link #getMembers(String, String)} never waits for the connector once the list is loaded. The list is loaded
+     * in the background right away if it's not already cached. Hot lists can also be declared in the
+     * {@code mailinglist.<profile>.hotLists} property (comma separated addresses). This has no effect when the members
+     * of the profile are not cached.
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @throws MailingListException when the connector of the profile could not be resolved
+     * @since 1.1
+     */
+    void registerHotList(String profile, String mailingList) throws MailingListException;
+
+    /**
+     * Stop keeping the members of a mailing list loaded (unless it's declared in the configuration).
+     * 
+     * @param profile the profile
+     * @param mailingList the mailing list
+     * @since 1.1
+     */
+    void unregisterHotList(String profile, String mailingList);
+
+    /**
+     * @return the statistics of the members cache
+     * @since 1.1
+     */
+    MailingListCacheStatistics getCacheStatistics();
+
+    /**
+     * @return the metrics of the operations executed so far
+     * @since 1.1
+     */
+    List<MailingListOperationStatistics> getMetrics();
+
+    /**
+     * @param profile the profile
+     * @return the status of the circuit breaker protecting the connector of the profile
+     * @throws MailingListException when the connector of the profile could not be resolved
+     * @since 1.1
+     */
+    MailingListCircuitBreakerStatus getCircuitBreaker(String profile) throws MailingListException;
+
+    /**
+     * @return the status of the circuit breakers of the profiles used so far, indexed by profile
+     * @since 1.1
+     */
+    Map<String, MailingListCircuitBreakerStatus> getCircuitBreakers();
 }
@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Give access to the metrics of the mailing list operations so that connectors can record their own calls (HTTP
+ * requests, parsing, etc.) next to the ones recorded by the manager.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Role
+public interface MailingListMetricsRegistry
+{
+    /**
+     * @param profile the profile
+     * @param connector the hint of the connector
+     * @param operation the operation
+     * @return the metrics of the operation (which don't record anything when metrics are disabled)
+     */
+    MailingListOperationMetrics get(String profile, String connector, String operation);
+}
@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+/**
+ * Record the calls of an operation: counters, in flight gauge and latency histogram.
+ * <p>
+ * Typical usage:
+ * 
+ * <pre>
+ * long start = metrics.start();
+ * try {
+ *     ...
+ *     metrics.succeeded(start);
+ * } catch (Exception e) {
+ *     metrics.failed(start, e);
+ *     throw e;
+ * }
+ * </pre>
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public interface MailingListOperationMetrics
+{
+    /**
+     * Indicate that a call started.
+     * 
+     * @return the start time to pass to {@link #succeeded(long)} or {@link #failed(long, String)}
+     */
+    long start();
+
+    /**
+     * Indicate that a call succeeded.
+     * 
+     * @param start the value returned by {@link #start()}
+     */
+    void succeeded(long start);
+
+    /**
+     * Indicate that a call failed.
+     * 
+     * @param start the value returned by {@link #start()}
+     * @param reason the reason of the failure (HTTP status, exception type, etc.)
+     */
+    void failed(long start, String reason);
+
+    /**
+     * Indicate that a call failed.
+     * 
+     * @param start the value returned by {@link #start()}
+     * @param cause the failure
+     */
+    void failed(long start, Throwable cause);
+}
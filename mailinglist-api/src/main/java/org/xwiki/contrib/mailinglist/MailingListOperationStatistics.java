@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.Map;
+
+/**
+ * Metrics of an operation (a manager method, or a phase of a connector call) for a given profile and connector.
+ * <p>
+ * Percentiles are estimated from a histogram with buckets growing by powers of two, so they are upper bounds accurate
+ * to a factor of two.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListOperationStatistics
+{
+    private final String profile;
+
+    private final String connector;
+
+    private final String operation;
+
+    private final long count;
+
+    private final long errors;
+
+    private final int inFlight;
+
+    private final double meanTime;
+
+    private final double medianTime;
+
+    private final double p95Time;
+
+    private final double p99Time;
+
+    private final double maxTime;
+
+    private final Map<String, Long> errorsByReason;
+
+    /**
+     * @param profile the profile
+     * @param connector the hint of the connector
+     * @param operation the operation
+     * @param count the number of completed calls
+     * @param errors the number of failed calls
+     * @param inFlight the number of calls in progress
+     * @param meanTime the mean duration of the calls in milliseconds
+     * @param medianTime the median duration of the calls in milliseconds
+     * @param p95Time the 95th percentile of the duration of the calls in milliseconds
+     * @param p99Time the 99th percentile of the duration of the calls in milliseconds
+     * @param maxTime the longest duration of the calls in milliseconds
+     * @param errorsByReason the number of failed calls indexed by reason (HTTP status, exception type, etc.)
+     */
+    public MailingListOperationStatistics(String profile, String connector, String operation, long count, long errors,
+        int inFlight, double meanTime, double medianTime, double p95Time, double p99Time, double maxTime,
+        Map<String, Long> errorsByReason)
+    {
+        this.profile = profile;
+        this.connector = connector;
+        this.operation = operation;
+        this.count = count;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.meanTime = meanTime;
+        this.medianTime = medianTime;
+        this.p95Time = p95Time;
+        this.p99Time = p99Time;
+        this.maxTime = maxTime;
+        this.errorsByReason = errorsByReason;
+    }
+
+    /**
+     * @return the profile
+     */
+    public String getProfile()
+    {
+        return this.profile;
+    }
+
+    /**
+     * @return the hint of the connector
+     */
+    public String getConnector()
+    {
+        return this.connector;
+    }
+
+    /**
+     * @return the operation
+     */
+    public String getOperation()
+    {
+        return this.operation;
+    }
+
+    /**
+     * @return the number of completed calls
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @return the number of failed calls
+     */
+    public long getErrors()
+    {
+        return this.errors;
+    }
+
+    /**
+     * @return the number of calls in progress
+     */
+    public int getInFlight()
+    {
+        return this.inFlight;
+    }
+
+    /**
+     * @return the mean duration of the calls in milliseconds
+     */
+    public double getMeanTime()
+    {
+        return this.meanTime;
+    }
+
+    /**
+     * @return the median duration of the calls in milliseconds
+     */
+    public double getMedianTime()
+    {
+        return this.medianTime;
+    }
+
+    /**
+     * @return the 95th percentile of the duration of the calls in milliseconds
+     */
+    public double getP95Time()
+    {
+        return this.p95Time;
+    }
+
+    /**
+     * @return the 99th percentile of the duration of the calls in milliseconds
+     */
+    public double getP99Time()
+    {
+        return this.p99Time;
+    }
+
+    /**
+     * @return the longest duration of the calls in milliseconds
+     */
+    public double getMaxTime()
+    {
+        return this.maxTime;
+    }
+
+    /**
+     * @return the number of failed calls indexed by reason (HTTP status, exception type, etc.)
+     */
+    public Map<String, Long> getErrorsByReason()
+    {
+        return this.errorsByReason;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.profile + '/' + this.connector + '/' + this.operation + ": count: " + this.count + ", errors: "
+            + this.errors + ", in flight: " + this.inFlight + ", mean: " + this.meanTime + "ms, p50: "
+            + this.medianTime + "ms, p95: " + this.p95Time + "ms, p99: " + this.p99Time + "ms, max: " + this.maxTime
+            + "ms";
+    }
+}
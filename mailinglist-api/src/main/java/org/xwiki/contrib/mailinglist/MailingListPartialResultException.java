@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown when an operation involving several remote calls partially failed. The part of the result which could be
+ * computed is still available through {@link #getPartialResult()}.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListPartialResultException extends MailingListException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<String> partialResult;
+
+    private final transient Map<String, MailingListException> failures;
+
+    /**
+     * @param message the detail message
+     * @param partialResult the part of the result which could be computed
+     * @param failures the elements which failed associated to the reason of the failure
+     */
+    public MailingListPartialResultException(String message, List<String> partialResult,
+        Map<String, MailingListException> failures)
+    {
+        super(message);
+
+        this.partialResult = Collections.unmodifiableList(partialResult);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return the part of the result which could be computed
+     */
+    public List<String> getPartialResult()
+    {
+        return this.partialResult;
+    }
+
+    /**
+     * @return the elements which failed associated to the reason of the failure
+     */
+    public Map<String, MailingListException> getFailures()
+    {
+        return this.failures;
+    }
+}
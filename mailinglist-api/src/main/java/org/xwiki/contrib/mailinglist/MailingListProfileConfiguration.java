@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of the configuration of a mailing list profile (all the {@code mailinglist.<profile>.*}
+ * properties, without the prefix).
+ * <p>
+ * Instances are shared between threads and reused between calls as long as the configuration does not change so
+ * connectors can safely use them as cache keys.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public final class MailingListProfileConfiguration
+{
+    /**
+     * The property containing the hint of the connector to use.
+     */
+    public static final String PROPERTY_CONNECTOR = "connector";
+
+    private final String profile;
+
+    private final Map<String, String> properties;
+
+    /**
+     * The parsed values of the properties read with {@link #getSet(String)}, the configuration being immutable.
+     */
+    private final ConcurrentMap<String, Set<String>> sets = new ConcurrentHashMap<>();
+
+    /**
+     * @param profile the name of the profile
+     * @param properties the properties of the profile (without the {@code mailinglist.<profile>.} prefix)
+     */
+    public MailingListProfileConfiguration(String profile, Map<String, String> properties)
+    {
+        this.profile = profile;
+        this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    /**
+     * @return the name of the profile
+     */
+    public String getProfile()
+    {
+        return this.profile;
+    }
+
+    /**
+     * @return the hint of the {@link MailingListConnector} to use for this profile
+     */
+    public String getConnector()
+    {
+        return get(PROPERTY_CONNECTOR);
+    }
+
+    /**
+     * @param key the name of the property
+     * @return the value of the property or null if it's not set
+     */
+    public String get(String key)
+    {
+        return this.properties.get(key);
+    }
+
+    /**
+     * @param key the name of the property
+     * @param defaultValue the value to return when the property is not set
+     * @return the value of the property
+     */
+    public String get(String key, String defaultValue)
+    {
+        String value = this.properties.get(key);
+
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @param key the name of the property
+     * @param defaultValue the value to return when the property is not set or is not a valid integer
+     * @return the value of the property
+     */
+    public int getInt(String key, int defaultValue)
+    {
+        String value = this.properties.get(key);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // Fallback on default value
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * @param key the name of the property
+     * @param defaultValue the value to return when the property is not set or is not a valid long
+     * @return the value of the property
+     */
+    public long getLong(String key, long defaultValue)
+    {
+        String value = this.properties.get(key);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // Fallback on default value
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * @param key the name of the property
+     * @param defaultValue the value to return when the property is not set
+     * @return the value of the property
+     */
+    public boolean getBoolean(String key, boolean defaultValue)
+    {
+        String value = this.properties.get(key);
+
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    /**
+     * @param key the name of the property
+     * @return the unmodifiable set of the trimmed non empty comma separated values of the property, empty if it's not
+     *         set
+     */
+    public Set<String> getSet(String key)
+    {
+        Set<String> values = this.sets.get(key);
+        if (values == null) {
+            values = this.sets.computeIfAbsent(key, this::parseSet);
+        }
+
+        return values;
+    }
+
+    private Set<String> parseSet(String key)
+    {
+        String value = this.properties.get(key);
+        if (value == null) {
+            return Collections.emptySet();
+        }
+
+        Set<String> values = new LinkedHashSet<>();
+        for (String element : value.split(",")) {
+            if (!element.trim().isEmpty()) {
+                values.add(element.trim());
+            }
+        }
+
+        return Collections.unmodifiableSet(values);
+    }
+
+    /**
+     * @return an unmodifiable view of all the properties of the profile
+     */
+    public Map<String, String> asMap()
+    {
+        return this.properties;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.profile;
+    }
+}
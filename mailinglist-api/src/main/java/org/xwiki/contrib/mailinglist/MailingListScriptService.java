@@ -20,7 +20,9 @@
 
 package org.xwiki.contrib.mailinglist;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -54,4 +56,113 @@ public class MailingListScriptService implements ScriptService
     {
         return this.manager.getMembers(profile, mailingList);
     }
+
+    /**
+     * @since 1.1
+     */
+    public boolean isMember(String profile, String mailingList, String email) throws MailingListException
+    {
+        return this.manager.isMember(profile, mailingList, email);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public Map<String, List<String>> getListsForMember(String email) throws MailingListException
+    {
+        return this.manager.getListsForMember(email);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public List<String> getMembers(String profile, String mailingList, int offset, int limit)
+        throws MailingListException
+    {
+        return this.manager.getMembers(profile, mailingList, offset, limit);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListBulkResult addAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException
+    {
+        return this.manager.addAll(profile, mailingList, emails);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListBulkResult deleteAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException
+    {
+        return this.manager.deleteAll(profile, mailingList, emails);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListSyncResult sync(String profile, String mailingList, Collection<String> members)
+        throws MailingListException
+    {
+        return this.manager.sync(profile, mailingList, members, false);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListSyncResult sync(String profile, String mailingList, Collection<String> members, boolean dryRun)
+        throws MailingListException
+    {
+        return this.manager.sync(profile, mailingList, members, dryRun);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public void registerHotList(String profile, String mailingList) throws MailingListException
+    {
+        this.manager.registerHotList(profile, mailingList);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public void unregisterHotList(String profile, String mailingList)
+    {
+        this.manager.unregisterHotList(profile, mailingList);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListCacheStatistics getCacheStatistics()
+    {
+        return this.manager.getCacheStatistics();
+    }
+
+    /**
+     * @since 1.1
+     */
+    public List<MailingListOperationStatistics> getMetrics()
+    {
+        return this.manager.getMetrics();
+    }
+
+    /**
+     * @since 1.1
+     */
+    public MailingListCircuitBreakerStatus getCircuitBreaker(String profile) throws MailingListException
+    {
+        return this.manager.getCircuitBreaker(profile);
+    }
+
+    /**
+     * @since 1.1
+     */
+    public Map<String, MailingListCircuitBreakerStatus> getCircuitBreakers()
+    {
+        return this.manager.getCircuitBreakers();
+    }
 }
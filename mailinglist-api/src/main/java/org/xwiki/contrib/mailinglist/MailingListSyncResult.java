@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of a mailing list synchronization.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListSyncResult
+{
+    private final boolean dryRun;
+
+    private final List<String> added;
+
+    private final List<String> removed;
+
+    private final Map<String, MailingListException> failed;
+
+    private final int unchanged;
+
+    /**
+     * @param dryRun true if the changes were only computed and not applied
+     * @param added the addresses added to the list (or which would be added in dry run mode)
+     * @param removed the addresses removed from the list (or which would be removed in dry run mode)
+     * @param failed the addresses which could not be added or removed associated to the reason of the failure
+     * @param unchanged the number of members which were already in the list
+     */
+    public MailingListSyncResult(boolean dryRun, List<String> added, List<String> removed,
+        Map<String, MailingListException> failed, int unchanged)
+    {
+        this.dryRun = dryRun;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.failed = Collections.unmodifiableMap(failed);
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * @return true if the changes were only computed and not applied
+     */
+    public boolean isDryRun()
+    {
+        return this.dryRun;
+    }
+
+    /**
+     * @return the addresses added to the list (or which would be added in dry run mode)
+     */
+    public List<String> getAdded()
+    {
+        return this.added;
+    }
+
+    /**
+     * @return the addresses removed from the list (or which would be removed in dry run mode)
+     */
+    public List<String> getRemoved()
+    {
+        return this.removed;
+    }
+
+    /**
+     * @return the addresses which could not be added or removed associated to the reason of the failure
+     */
+    public Map<String, MailingListException> getFailed()
+    {
+        return this.failed;
+    }
+
+    /**
+     * @return the number of members which were already in the list
+     */
+    public int getUnchanged()
+    {
+        return this.unchanged;
+    }
+
+    /**
+     * @return true if all the changes were successfully applied
+     */
+    public boolean isSuccess()
+    {
+        return this.failed.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return (this.dryRun ? "dry run, " : "") + "added: " + this.added.size() + ", removed: " + this.removed.size()
+            + ", failed: " + this.failed.size() + ", unchanged: " + this.unchanged;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Execute tasks concurrently on the thread pool shared by the mailing list components, for example to send the
+ * requests of a bulk operation when the service does not provide any batch API.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Role
+public interface MailingListTaskExecutor
+{
+    /**
+     * A task executed for each element of a list.
+     * 
+     * @param <I> the type of the elements
+     * @version $Id$
+     */
+    @FunctionalInterface
+    interface IndexedTask<I>
+    {
+        /**
+         * @param index the index of the element in the list
+         * @param item the element
+         * @throws Exception when failing to execute the task
+         */
+        void run(int index, I item) throws Exception;
+    }
+
+    /**
+     * Execute the task for each element of the list with at most {@code concurrency} elements processed at the same
+     * time, and wait for all of them to be processed.
+     * <p>
+     * When this method returns or throws, no task is running anymore and everything the tasks did is visible to the
+     * calling thread. The elements which were not processed when the calling thread was interrupted are skipped.
+     * 
+     * @param <I> the type of the elements
+     * @param items the elements to process
+     * @param concurrency the maximum number of elements processed at the same time
+     * @param task the task to execute for each element, it's expected to catch its own exceptions
+     * @throws MailingListException when the task failed with an unexpected exception or the thread was interrupted
+     */
+    <I> void forEach(List<I> items, int concurrency, IndexedTask<I> task) throws MailingListException;
+}
@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist;
+
+/**
+ * Thrown when an operation failed for a reason which is expected to go away (network error, timeout, server error,
+ * temporarily rejected call) so that it can be retried later. Any other {@link MailingListException} is considered
+ * permanent: retrying the same operation will fail the same way.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class MailingListTransientException extends MailingListException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message the detail message
+     */
+    public MailingListTransientException(String message)
+    {
+        super(message);
+    }
+
+    /**
+     * @param message the detail message
+     * @param cause the cause
+     */
+    public MailingListTransientException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
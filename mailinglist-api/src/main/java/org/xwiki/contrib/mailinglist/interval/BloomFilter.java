@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+/**
+ * Probabilistic set of strings: {@link #mightContain(String)} never returns false for an added element but may
+ * return true for an element which was never added, with a probability chosen at creation. Elements cannot be removed.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class BloomFilter
+{
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedSize the number of elements expected to be added to the filter
+     * @param falsePositiveRate the probability of false positives once the expected number of elements is reached
+     */
+    public BloomFilter(int expectedSize, double falsePositiveRate)
+    {
+        int size = Math.max(expectedSize, 1);
+
+        // Optimal number of bits and hash functions
+        long optimalBitCount = (long) Math.ceil(-size * Math.log(falsePositiveRate) / (LN2 * LN2));
+        this.bits = new long[(int) Math.max((optimalBitCount + 63) / 64, 1)];
+        this.bitCount = this.bits.length * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / size * LN2));
+    }
+
+    /**
+     * @param element the element to add
+     */
+    public void add(String element)
+    {
+        long hash = hash(element);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < this.hashCount; ++i) {
+            long bit = index(hash1 + i * hash2);
+            this.bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param element the element to look for
+     * @return false if the element was never added to the filter, true if it might have been
+     */
+    public boolean mightContain(String element)
+    {
+        long hash = hash(element);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < this.hashCount; ++i) {
+            long bit = index(hash1 + i * hash2);
+            if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private long index(int combinedHash)
+    {
+        return (combinedHash & 0xFFFFFFFFL) % this.bitCount;
+    }
+
+    private static long hash(String element)
+    {
+        // 64 bits FNV-1a followed by the MurmurHash3 finalizer, split in two 32 bits hashes by the callers
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < element.length(); ++i) {
+            hash ^= element.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
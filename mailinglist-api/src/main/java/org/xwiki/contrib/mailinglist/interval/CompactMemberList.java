@@ -0,0 +1,456 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable list of email addresses using a fraction of the memory of a list of {@link String}s.
+ * <p>
+ * The local parts of the addresses are stored as UTF-8 in a single packed byte array and their domains as an
+ * identifier in a shared {@link DomainDictionary}. The addresses are indexed by an open addressing hash table of
+ * primitive integers so that {@link #containsNormalized(String)} does not need to scan the list. The {@link String}
+ * of an address is created again each time it's accessed.
+ * <p>
+ * Local modifications ({@link #with(Collection)} and {@link #without(Collection)}) don't rebuild the packed arrays:
+ * they are shared with the new list, which records the removed addresses and the added ones in a small overlay. The
+ * overlay is merged into new packed arrays once it grows beyond a fraction of the list.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public final class CompactMemberList extends AbstractList<String> implements RandomAccess
+{
+    private static final int NO_DOMAIN = -1;
+
+    /**
+     * The estimated size of an object or array header, in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The minimum number of modifications kept in the overlay before merging it.
+     */
+    private static final int MIN_OVERLAY = 64;
+
+    private static final int[] NO_INDEXES = new int[0];
+
+    private static final String[] NO_EMAILS = new String[0];
+
+    private final DomainDictionary domains;
+
+    /**
+     * The number of addresses in the packed arrays, including the removed ones.
+     */
+    private final int baseSize;
+
+    private final byte[] localParts;
+
+    /**
+     * The start of each local part in {@link #localParts}, followed by the end of the last one.
+     */
+    private final int[] offsets;
+
+    private final int[] domainIds;
+
+    /**
+     * The hash code of each normalized address.
+     */
+    private final int[] hashes;
+
+    /**
+     * The index (plus one) of the addresses in the slot of their hash, 0 for empty slots.
+     */
+    private final int[] table;
+
+    /**
+     * The sorted indexes of the addresses of the packed arrays which were removed.
+     */
+    private final int[] removed;
+
+    /**
+     * The addresses added after the packed arrays were built.
+     */
+    private final String[] added;
+
+    /**
+     * The normalized version of {@link #added}.
+     */
+    private final Set<String> addedNormalized;
+
+    private static final class Builder
+    {
+        private final DomainDictionary domains;
+
+        private byte[] localParts;
+
+        private int length;
+
+        private int[] offsets;
+
+        private int[] domainIds;
+
+        private int[] hashes;
+
+        private int size;
+
+        Builder(DomainDictionary domains, int capacity)
+        {
+            this.domains = domains;
+            this.localParts = new byte[Math.max(capacity * 16, 16)];
+            this.offsets = new int[capacity + 1];
+            this.domainIds = new int[capacity];
+            this.hashes = new int[capacity];
+        }
+
+        void add(String email)
+        {
+            int index = email.lastIndexOf('@');
+            byte[] localPart = (index != -1 ? email.substring(0, index) : email).getBytes(StandardCharsets.UTF_8);
+            int domainId = index != -1 ? this.domains.getId(email.substring(index + 1)) : NO_DOMAIN;
+
+            append(localPart, 0, localPart.length, domainId, normalize(email).hashCode());
+        }
+
+        void add(CompactMemberList list, int index)
+        {
+            int offset = list.offsets[index];
+
+            append(list.localParts, offset, list.offsets[index + 1] - offset, list.domainIds[index],
+                list.hashes[index]);
+        }
+
+        private void append(byte[] localPart, int offset, int localPartLength, int domainId, int hash)
+        {
+            if (this.size == this.domainIds.length) {
+                int capacity = Math.max(this.size * 2, 16);
+                this.offsets = Arrays.copyOf(this.offsets, capacity + 1);
+                this.domainIds = Arrays.copyOf(this.domainIds, capacity);
+                this.hashes = Arrays.copyOf(this.hashes, capacity);
+            }
+            if (this.length + localPartLength > this.localParts.length) {
+                this.localParts =
+                    Arrays.copyOf(this.localParts, Math.max(this.localParts.length * 2, this.length + localPartLength));
+            }
+
+            System.arraycopy(localPart, offset, this.localParts, this.length, localPartLength);
+            this.length += localPartLength;
+            this.domainIds[this.size] = domainId;
+            this.hashes[this.size] = hash;
+            ++this.size;
+            this.offsets[this.size] = this.length;
+        }
+
+        CompactMemberList build()
+        {
+            return new CompactMemberList(this);
+        }
+    }
+
+    private CompactMemberList(Builder builder)
+    {
+        this.domains = builder.domains;
+        this.baseSize = builder.size;
+        this.localParts = Arrays.copyOf(builder.localParts, builder.length);
+        this.offsets = Arrays.copyOf(builder.offsets, builder.size + 1);
+        this.domainIds = Arrays.copyOf(builder.domainIds, builder.size);
+        this.hashes = Arrays.copyOf(builder.hashes, builder.size);
+        this.removed = NO_INDEXES;
+        this.added = NO_EMAILS;
+        this.addedNormalized = Collections.emptySet();
+
+        // Keep the table at most half full
+        this.table = new int[Integer.highestOneBit(Math.max(this.baseSize * 2, 2) - 1) << 1];
+        int mask = this.table.length - 1;
+        for (int i = 0; i < this.baseSize; ++i) {
+            int slot = slot(this.hashes[i], mask);
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = i + 1;
+        }
+    }
+
+    private CompactMemberList(CompactMemberList base, int[] removed, String[] added, Set<String> addedNormalized)
+    {
+        this.domains = base.domains;
+        this.baseSize = base.baseSize;
+        this.localParts = base.localParts;
+        this.offsets = base.offsets;
+        this.domainIds = base.domainIds;
+        this.hashes = base.hashes;
+        this.table = base.table;
+        this.removed = removed;
+        this.added = added;
+        this.addedNormalized = addedNormalized;
+    }
+
+    /**
+     * @param emails the addresses
+     * @param domains the dictionary used to store the domains
+     * @return the compact version of the list of addresses
+     */
+    public static CompactMemberList of(Collection<String> emails, DomainDictionary domains)
+    {
+        Builder builder = new Builder(domains, emails.size());
+        for (String email : emails) {
+            builder.add(email);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public String get(int index)
+    {
+        int size = size();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        int baseVisibleSize = this.baseSize - this.removed.length;
+
+        return index < baseVisibleSize ? decode(toBaseIndex(index)) : this.added[index - baseVisibleSize];
+    }
+
+    /**
+     * @param index the index of an address of the list coming from the packed arrays
+     * @return the index of the address in the packed arrays, skipping the removed ones
+     */
+    private int toBaseIndex(int index)
+    {
+        // Count the removed addresses located before the wanted one (removed[i] - i is sorted)
+        int low = 0;
+        int high = this.removed.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.removed[middle] - middle <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return index + low;
+    }
+
+    private String decode(int index)
+    {
+        int offset = this.offsets[index];
+        String localPart =
+            new String(this.localParts, offset, this.offsets[index + 1] - offset, StandardCharsets.UTF_8);
+
+        int domainId = this.domainIds[index];
+
+        return domainId != NO_DOMAIN ? localPart + '@' + this.domains.get(domainId) : localPart;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.baseSize - this.removed.length + this.added.length;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        if (!(o instanceof String)) {
+            return false;
+        }
+
+        // Use the hash table to find the candidates, then require an exact match as expected from a List
+        String email = (String) o;
+        String normalizedEmail = normalize(email);
+        for (int index : findBase(normalizedEmail, false)) {
+            if (decode(index).equals(email)) {
+                return true;
+            }
+        }
+
+        return this.addedNormalized.contains(normalizedEmail) && Arrays.asList(this.added).contains(email);
+    }
+
+    /**
+     * @param normalizedEmail the address to look for, trimmed and in lower case
+     * @return true if the list contains the address, ignoring the case and the surrounding whitespaces
+     */
+    public boolean containsNormalized(String normalizedEmail)
+    {
+        return this.addedNormalized.contains(normalizedEmail) || !findBase(normalizedEmail, false).isEmpty();
+    }
+
+    /**
+     * @param normalizedEmail the address to look for, trimmed and in lower case
+     * @param includeRemoved true to also return the matching addresses which were removed
+     * @return the indexes in the packed arrays of the addresses matching the passed one
+     */
+    private List<Integer> findBase(String normalizedEmail, boolean includeRemoved)
+    {
+        List<Integer> indexes = Collections.emptyList();
+
+        int hash = normalizedEmail.hashCode();
+        int mask = this.table.length - 1;
+        for (int slot = slot(hash, mask); this.table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = this.table[slot] - 1;
+            if (this.hashes[index] == hash && (includeRemoved || Arrays.binarySearch(this.removed, index) < 0)
+                && normalize(decode(index)).equals(normalizedEmail)) {
+                if (indexes.isEmpty()) {
+                    indexes = new ArrayList<>(1);
+                }
+                indexes.add(index);
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * @param emails the addresses to add
+     * @return a new list containing the members of this list followed by the passed addresses which are not already
+     *         members
+     */
+    public CompactMemberList with(Collection<String> emails)
+    {
+        Set<Integer> newRemoved = toSet(this.removed);
+        List<String> newAdded = new ArrayList<>(Arrays.asList(this.added));
+        Set<String> newAddedNormalized = new HashSet<>(this.addedNormalized);
+
+        for (String email : emails) {
+            String normalizedEmail = normalize(email);
+            if (!containsNormalized(normalizedEmail) && !newAddedNormalized.contains(normalizedEmail)) {
+                // Bring back the address if it was removed from the packed arrays
+                List<Integer> removedIndexes = findBase(normalizedEmail, true);
+                if (!removedIndexes.isEmpty()) {
+                    newRemoved.remove(removedIndexes.get(0));
+                } else {
+                    newAdded.add(email);
+                    newAddedNormalized.add(normalizedEmail);
+                }
+            }
+        }
+
+        return withOverlay(newRemoved, newAdded, newAddedNormalized);
+    }
+
+    /**
+     * @param emails the addresses to remove
+     * @return a new list containing the members of this list which are not part of the passed addresses
+     */
+    public CompactMemberList without(Collection<String> emails)
+    {
+        Set<Integer> newRemoved = toSet(this.removed);
+        List<String> newAdded = new ArrayList<>(Arrays.asList(this.added));
+        Set<String> newAddedNormalized = new HashSet<>(this.addedNormalized);
+
+        for (String email : emails) {
+            String normalizedEmail = normalize(email);
+            newRemoved.addAll(findBase(normalizedEmail, false));
+            if (newAddedNormalized.remove(normalizedEmail)) {
+                newAdded.removeIf(addedEmail -> normalize(addedEmail).equals(normalizedEmail));
+            }
+        }
+
+        return withOverlay(newRemoved, newAdded, newAddedNormalized);
+    }
+
+    private CompactMemberList withOverlay(Set<Integer> newRemoved, List<String> newAdded,
+        Set<String> newAddedNormalized)
+    {
+        int[] removedIndexes = newRemoved.stream().mapToInt(Integer::intValue).toArray();
+        String[] addedEmails = newAdded.toArray(NO_EMAILS);
+        CompactMemberList list = new CompactMemberList(this, removedIndexes, addedEmails,
+            Collections.unmodifiableSet(newAddedNormalized));
+
+        // Merge the overlay when it becomes too expensive to maintain
+        if (removedIndexes.length + addedEmails.length > Math.max(MIN_OVERLAY, this.baseSize >> 4)) {
+            list = list.compact();
+        }
+
+        return list;
+    }
+
+    private CompactMemberList compact()
+    {
+        Builder builder = new Builder(this.domains, size());
+        for (int i = 0, next = 0; i < this.baseSize; ++i) {
+            if (next < this.removed.length && this.removed[next] == i) {
+                ++next;
+            } else {
+                builder.add(this, i);
+            }
+        }
+        for (String email : this.added) {
+            builder.add(email);
+        }
+
+        return builder.build();
+    }
+
+    private static Set<Integer> toSet(int[] indexes)
+    {
+        Set<Integer> set = new TreeSet<>();
+        for (int index : indexes) {
+            set.add(index);
+        }
+
+        return set;
+    }
+
+    /**
+     * @return the estimated number of bytes used by this list, not including the shared domains
+     */
+    public long getMemoryUsage()
+    {
+        long usage = HEADER_SIZE * 9L + this.localParts.length
+            + 4L * (this.offsets.length + this.domainIds.length + this.hashes.length + this.table.length);
+
+        // The overlay: the removed indexes and the added addresses, twice (as is and normalized)
+        usage += 4L * this.removed.length;
+        for (String email : this.added) {
+            usage += 2 * (HEADER_SIZE * 2L + email.length());
+        }
+
+        return usage;
+    }
+
+    private static int slot(int hash, int mask)
+    {
+        // Spread the bits of the hash code since only the lowest ones are used
+        int spreadHash = hash * 0x9E3779B9;
+
+        return (spreadHash ^ (spreadHash >>> 16)) & mask;
+    }
+
+    private static String normalize(String email)
+    {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
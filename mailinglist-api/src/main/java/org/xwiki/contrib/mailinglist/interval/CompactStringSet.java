@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.function.Consumer;
+
+/**
+ * Memory efficient set of strings based on open addressing with linear probing: the elements are stored directly in
+ * a power of two sized array (no entry object per element as in a {@link java.util.HashSet}), kept at most half
+ * full.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class CompactStringSet
+{
+    private static final int MIN_CAPACITY = 8;
+
+    private String[] table;
+
+    private int size;
+
+    /**
+     * @param expectedSize the number of elements the set should be able to contain without being resized
+     */
+    public CompactStringSet(int expectedSize)
+    {
+        this.table = new String[capacity(expectedSize)];
+    }
+
+    /**
+     * @return the number of elements in the set
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param element the element to look for
+     * @return true if the set contains the element
+     */
+    public boolean contains(String element)
+    {
+        return this.table[indexOf(this.table, element)] != null;
+    }
+
+    /**
+     * @param element the element to add
+     * @return true if the element was added, false if it was already in the set
+     */
+    public boolean add(String element)
+    {
+        int index = indexOf(this.table, element);
+        if (this.table[index] != null) {
+            return false;
+        }
+
+        this.table[index] = element;
+        ++this.size;
+
+        if (this.size * 2 > this.table.length) {
+            resize(this.table.length * 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param element the element to remove
+     * @return true if the element was removed, false if it was not in the set
+     */
+    public boolean remove(String element)
+    {
+        int mask = this.table.length - 1;
+        int index = indexOf(this.table, element);
+        if (this.table[index] == null) {
+            return false;
+        }
+
+        this.table[index] = null;
+        --this.size;
+
+        // Shift back the following elements of the cluster which would not be found anymore
+        for (int next = (index + 1) & mask; this.table[next] != null; next = (next + 1) & mask) {
+            int slot = slot(this.table[next], mask);
+            if (index <= next ? (slot <= index || slot > next) : (slot <= index && slot > next)) {
+                this.table[index] = this.table[next];
+                this.table[next] = null;
+                index = next;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param action called with each element of the set, in no particular order
+     */
+    public void forEach(Consumer<String> action)
+    {
+        for (String element : this.table) {
+            if (element != null) {
+                action.accept(element);
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        String[] newTable = new String[capacity];
+        for (String element : this.table) {
+            if (element != null) {
+                newTable[indexOf(newTable, element)] = element;
+            }
+        }
+
+        this.table = newTable;
+    }
+
+    /**
+     * @return the index of the element in the table or the index of the empty slot where it should be inserted
+     */
+    private static int indexOf(String[] table, String element)
+    {
+        int mask = table.length - 1;
+        int index = slot(element, mask);
+        while (table[index] != null && !table[index].equals(element)) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private static int slot(String element, int mask)
+    {
+        // Spread the bits of the hash code since only the lowest ones are used
+        int hash = element.hashCode() * 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int capacity(int expectedSize)
+    {
+        return Integer.highestOneBit(Math.max(expectedSize * 2, MIN_CAPACITY) - 1) << 1;
+    }
+}
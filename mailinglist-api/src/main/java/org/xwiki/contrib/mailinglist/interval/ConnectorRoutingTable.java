@@ -0,0 +1,256 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.mailinglist.MailingListAsyncConnector;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+
+/**
+ * Routing table associating each profile to its resolved connector and configuration.
+ * <p>
+ * Routes are resolved lazily and reused as long as the profile configuration snapshot does not change. Failed
+ * lookups are remembered for a few seconds to avoid hammering the component manager with a misconfigured profile.
+ * Nothing is remembered for the profiles which are not declared in the configuration.
+ * <p>
+ * The connector of each route is protected by the {@link ProfileGuard} of its profile so that a failing or slow
+ * endpoint does not impact the other profiles. The guards are kept across route rebuilds, only their configuration
+ * being updated, so that an open circuit or the calls in progress are not forgotten when the configuration changes.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = ConnectorRoutingTable.class)
+@Singleton
+public class ConnectorRoutingTable
+{
+    private static final long FAILURE_DURATION = TimeUnit.SECONDS.toNanos(10);
+
+    private static final String OPERATION_RESOLVE = "resolve";
+
+    /**
+     * A resolved connector and the configuration it should be called with.
+     * 
+     * @version $Id$
+     */
+    public static final class Route
+    {
+        private final MailingListProfileConfiguration configuration;
+
+        private final MailingListConnector connector;
+
+        private final ProfileGuard guard;
+
+        private final MailingListException failure;
+
+        private final long failureExpiration;
+
+        Route(MailingListProfileConfiguration configuration, MailingListConnector connector, ProfileGuard guard)
+        {
+            this.configuration = configuration;
+            this.guard = guard;
+            this.connector = connector instanceof MailingListAsyncConnector
+                ? new GuardedMailingListAsyncConnector(connector, this.guard)
+                : new GuardedMailingListConnector(connector, this.guard);
+            this.failure = null;
+            this.failureExpiration = 0;
+        }
+
+        Route(MailingListProfileConfiguration configuration, MailingListException failure)
+        {
+            this.configuration = configuration;
+            this.connector = null;
+            this.guard = null;
+            this.failure = failure;
+            this.failureExpiration = System.nanoTime() + FAILURE_DURATION;
+        }
+
+        /**
+         * @return the configuration of the profile
+         */
+        public MailingListProfileConfiguration getConfiguration()
+        {
+            return this.configuration;
+        }
+
+        /**
+         * @return the connector associated to the profile
+         */
+        public MailingListConnector getConnector()
+        {
+            return this.connector;
+        }
+
+        /**
+         * @return the circuit breaker and bulkhead protecting the connector
+         */
+        public ProfileGuard getGuard()
+        {
+            return this.guard;
+        }
+
+        boolean isValid(MailingListProfileConfiguration currentConfiguration)
+        {
+            return this.configuration == currentConfiguration && !isExpired(System.nanoTime());
+        }
+
+        boolean isExpired(long now)
+        {
+            return this.failure != null && now - this.failureExpiration >= 0;
+        }
+    }
+
+    @Inject
+    private ProfileConfigurationCache configurations;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private MailingListMetrics metrics;
+
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ProfileGuard> guards = new ConcurrentHashMap<>();
+
+    /**
+     * @param profile the name of the profile
+     * @return the route associated to the profile
+     * @throws MailingListException when no connector could be found for the profile
+     */
+    public Route get(String profile) throws MailingListException
+    {
+        MailingListProfileConfiguration profileConfiguration = this.configurations.get(profile);
+
+        Route route = this.routes.get(profile);
+        if (route == null || !route.isValid(profileConfiguration)) {
+            route = resolve(profileConfiguration);
+
+            // Only remember the routes of existing profiles, the name of the profile may come from anywhere
+            if (isDeclared(profileConfiguration)) {
+                if (route.failure != null) {
+                    // Forget the failures which are not relevant anymore
+                    long now = System.nanoTime();
+                    this.routes.values().removeIf(previousRoute -> previousRoute.isExpired(now));
+                }
+
+                this.routes.put(profile, route);
+            }
+        }
+
+        if (route.failure != null) {
+            throw route.failure;
+        }
+
+        return route;
+    }
+
+    /**
+     * @return the status of the circuit breakers of the resolved routes, indexed by profile
+     */
+    public Map<String, MailingListCircuitBreakerStatus> getCircuitBreakers()
+    {
+        Map<String, MailingListCircuitBreakerStatus> statuses = new TreeMap<>();
+        for (Map.Entry<String, ProfileGuard> entry : this.guards.entrySet()) {
+            statuses.put(entry.getKey(), entry.getValue().getStatus());
+        }
+
+        return statuses;
+    }
+
+    /**
+     * Forget all resolved routes. The guards of the profiles which still exist are kept.
+     */
+    public void invalidate()
+    {
+        this.routes.clear();
+
+        Set<String> profiles = new HashSet<>();
+        for (MailingListProfileConfiguration profileConfiguration : this.configurations.getProfiles()) {
+            profiles.add(profileConfiguration.getProfile());
+        }
+        this.guards.keySet().retainAll(profiles);
+    }
+
+    private Route resolve(MailingListProfileConfiguration profileConfiguration)
+    {
+        String connectorHint = profileConfiguration.getConnector();
+
+        OperationMetrics operationMetrics = this.metrics.get(profileConfiguration.getProfile(),
+            String.valueOf(connectorHint), OPERATION_RESOLVE);
+        long start = operationMetrics.start();
+
+        try {
+            MailingListConnector connector =
+                this.componentManager.<MailingListConnector>getInstance(MailingListConnector.class, connectorHint);
+            Route route = new Route(profileConfiguration, connector, getGuard(profileConfiguration));
+
+            operationMetrics.succeeded(start);
+
+            return route;
+        } catch (ComponentLookupException e) {
+            operationMetrics.failed(start, e);
+
+            return new Route(profileConfiguration,
+                // The extension providing the connector might not be installed yet
+                new MailingListTransientException("Failed to get connector for hint " + connectorHint, e));
+        }
+    }
+
+    private static boolean isDeclared(MailingListProfileConfiguration profileConfiguration)
+    {
+        // Unknown profiles get an empty configuration
+        return !profileConfiguration.asMap().isEmpty();
+    }
+
+    private ProfileGuard getGuard(MailingListProfileConfiguration profileConfiguration)
+    {
+        if (!isDeclared(profileConfiguration)) {
+            return new ProfileGuard(profileConfiguration);
+        }
+
+        return this.guards.compute(profileConfiguration.getProfile(), (profile, guard) -> {
+            if (guard == null) {
+                return new ProfileGuard(profileConfiguration);
+            }
+
+            guard.configure(profileConfiguration);
+
+            return guard;
+        });
+    }
+}
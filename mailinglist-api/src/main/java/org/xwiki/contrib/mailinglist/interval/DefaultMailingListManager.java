@@ -19,20 +19,38 @@
  */
 package org.xwiki.contrib.mailinglist.interval;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.configuration.ConfigurationSource;
-import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListAsyncConnector;
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
+import org.xwiki.contrib.mailinglist.MailingListCacheStatistics;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus;
 import org.xwiki.contrib.mailinglist.MailingListException;
 import org.xwiki.contrib.mailinglist.MailingListManager;
+import org.xwiki.contrib.mailinglist.MailingListOperationStatistics;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListSyncResult;
+import org.xwiki.contrib.mailinglist.interval.ConnectorRoutingTable.Route;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor.Operation;
 
 /**
  * @version $Id$
@@ -41,68 +59,910 @@ import org.xwiki.contrib.mailinglist.MailingListManager;
 @Singleton
 public class DefaultMailingListManager implements MailingListManager
 {
+    private static final String METHOD_ADD = "add";
+
+    private static final String METHOD_DELETE = "delete";
+
+    private static final String METHOD_GETMEMBERS = "getMembers";
+
+    private static final String METHOD_ISMEMBER = "isMember";
+
+    private static final String METHOD_FOREACHMEMBER = "forEachMember";
+
+    private static final String METHOD_SYNC = "sync";
+
+    @FunctionalInterface
+    private interface Mutation
+    {
+        void execute() throws MailingListException;
+    }
+
+    private static final class MutationCall
+    {
+        private final String method;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        MutationCall(String method)
+        {
+            this.method = method;
+        }
+    }
+
+    @Inject
+    private ConnectorRoutingTable routingTable;
+
+    @Inject
+    private MailingListExecutor executor;
+
+    @Inject
+    private MembershipCache cache;
+
+    @Inject
+    private MembershipIndex index;
+
     @Inject
-    private ConfigurationSource configuration;
+    private ReverseMembershipIndex reverseIndex;
 
     @Inject
-    private ComponentManager componentManager;
+    private MembershipSnapshotStore snapshots;
+
+    @Inject
+    private MembershipRefreshScheduler refreshScheduler;
+
+    @Inject
+    private ProfileConfigurationCache configurations;
+
+    @Inject
+    private WriteBehindJournal journal;
+
+    @Inject
+    private WriteCoalescer coalescer;
+
+    @Inject
+    private MailingListMetrics metrics;
+
+    private final SingleFlight<MailingListKey, List<String>> getMembersCalls = new SingleFlight<>();
+
+    /**
+     * The latest modification started for each member (the key is profile, mailing list and normalized address).
+     */
+    private final ConcurrentMap<List<String>, MutationCall> mutationCalls = new ConcurrentHashMap<>();
+
+    /**
+     * The lists currently reloaded in the background.
+     */
+    private final Set<MailingListKey> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final SingleFlight<List<MailingListKey>, Void> reverseIndexCalls = new SingleFlight<>();
+
+    @Override
+    public void add(String profile, String mailingList, String email) throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        measure(METHOD_ADD, route, () -> {
+            add(route, profile, mailingList, email);
+
+            return null;
+        });
+    }
+
+    private void add(Route route, String profile, String mailingList, String email) throws MailingListException
+    {
+        long window = this.coalescer.getWindow(route.getConfiguration());
+        if (window > 0) {
+            MailingListExecutor.join(coalesce(METHOD_ADD, profile, mailingList, email, window));
+
+            return;
+        }
+
+        if (this.journal.isEnabled(route.getConfiguration())) {
+            MailingListKey key = new MailingListKey(profile, mailingList);
+            this.journal.append(METHOD_ADD, key, email);
+            this.cache.added(key, Collections.singleton(email));
+
+            return;
+        }
 
-    private Map<String, String> createConfiguration(String profile)
+        // Collapse identical concurrent additions
+        mutate(METHOD_ADD, profile, mailingList, email, () -> {
+            route.getConnector().add(route.getConfiguration(), mailingList, email);
+
+            this.cache.added(new MailingListKey(profile, mailingList), Collections.singleton(email));
+        });
+    }
+
+    @Override
+    public void delete(String profile, String mailingList, String email) throws MailingListException
     {
-        Map<String, String> profileConfiguration = new HashMap<>();
+        Route route = this.routingTable.get(profile);
+
+        measure(METHOD_DELETE, route, () -> {
+            delete(route, profile, mailingList, email);
+
+            return null;
+        });
+    }
+
+    private void delete(Route route, String profile, String mailingList, String email) throws MailingListException
+    {
+        long window = this.coalescer.getWindow(route.getConfiguration());
+        if (window > 0) {
+            MailingListExecutor.join(coalesce(METHOD_DELETE, profile, mailingList, email, window));
+
+            return;
+        }
+
+        if (this.journal.isEnabled(route.getConfiguration())) {
+            MailingListKey key = new MailingListKey(profile, mailingList);
+            this.journal.append(METHOD_DELETE, key, email);
+            this.cache.removed(key, Collections.singleton(email));
+
+            return;
+        }
+
+        // Collapse identical concurrent deletions
+        mutate(METHOD_DELETE, profile, mailingList, email, () -> {
+            route.getConnector().delete(route.getConfiguration(), mailingList, email);
+
+            this.cache.removed(new MailingListKey(profile, mailingList), Collections.singleton(email));
+        });
+    }
+
+    private void mutate(String method, String profile, String mailingList, String email, Mutation mutation)
+        throws MailingListException
+    {
+        List<String> key = Arrays.asList(profile, mailingList, normalize(email));
+        MutationCall call = new MutationCall(method);
+
+        // Only join an identical modification if no opposite modification of the same member started after it
+        MutationCall currentCall = this.mutationCalls.compute(key,
+            (k, latest) -> latest != null && latest.method.equals(method) ? latest : call);
+        if (currentCall != call) {
+            MailingListExecutor.join(currentCall.future);
+
+            return;
+        }
+
+        try {
+            mutation.execute();
+
+            call.future.complete(null);
+        } catch (Throwable e) {
+            call.future.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            this.mutationCalls.remove(key, call);
+        }
+    }
+
+    @Override
+    public List<String> getMembers(String profile, String mailingList) throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        return measure(METHOD_GETMEMBERS, route, () -> getMembers(route, profile, mailingList));
+    }
+
+    private List<String> getMembers(Route route, String profile, String mailingList) throws MailingListException
+    {
+        MailingListKey key = new MailingListKey(profile, mailingList);
+
+        long ttl = this.cache.getTTL(route.getConfiguration());
+        if (ttl <= 0) {
+            return this.getMembersCalls.execute(key, () -> fetchMembers(route, key));
+        }
 
-        String prefix = "mailinglist." + profile + ".";
-        for (String key : this.configuration.getKeys()) {
-            if (key.startsWith(prefix)) {
-                profileConfiguration.put(key.substring(prefix.length()),
-                    this.configuration.getProperty(key, String.class));
+        List<String> members = this.cache.get(key);
+        if (members == null) {
+            members = getStaleMembers(route, key, ttl);
+        }
+        if (members == null) {
+            members = restoreMembers(route, key, ttl);
+        }
+        if (members == null) {
+            members = loadMembers(route, key, ttl);
+        }
+
+        return members;
+    }
+
+    private List<String> restoreMembers(Route route, MailingListKey key, long ttl)
+    {
+        // Saved members are stale by nature so they are only used when stale members can be served
+        long staleTTL = getStaleTTL(route, key);
+        if (staleTTL <= 0) {
+            return null;
+        }
+
+        long version = this.cache.getVersion(key);
+        MembershipSnapshotStore.Snapshot snapshot = this.snapshots.restore(key);
+        if (snapshot == null) {
+            return null;
+        }
+
+        long age = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - snapshot.getDate()));
+        if (age - ttl >= staleTTL) {
+            return null;
+        }
+
+        // Serve the saved members as stale ones while they are reloaded in the background
+        this.cache.restore(key, this.journal.applyPending(key, snapshot.getMembers()), ttl, age, version);
+
+        return getStaleMembers(route, key, ttl);
+    }
+
+    private long getStaleTTL(Route route, MailingListKey key)
+    {
+        // Hot lists are always served from the cache, even when they could not be reloaded for a while
+        return this.refreshScheduler.isHot(key) ? Long.MAX_VALUE : this.cache.getStaleTTL(route.getConfiguration());
+    }
+
+    private List<String> getStaleMembers(Route route, MailingListKey key, long ttl)
+    {
+        long staleTTL = getStaleTTL(route, key);
+        List<String> members = staleTTL > 0 ? this.cache.getStale(key, staleTTL) : null;
+        if (members != null) {
+            refresh(route, key, ttl);
+        }
+
+        return members;
+    }
+
+    private List<String> loadMembers(Route route, MailingListKey key, long ttl) throws MailingListException
+    {
+        List<String> members;
+        try {
+            // Share the fetch between the threads asking for the same list at the same time
+            members = this.getMembersCalls.execute(key, () -> {
+                long version = this.cache.getVersion(key);
+
+                return this.cache.put(key, fetchMembers(route, key), ttl, version);
+            });
+        } catch (MailingListException e) {
+            if (this.refreshScheduler.isHot(key)) {
+                this.refreshScheduler.failed(key, ttl, () -> refreshHot(key));
+            }
+
+            throw e;
+        }
+
+        if (this.refreshScheduler.isHot(key)) {
+            this.refreshScheduler.loaded(key, ttl, () -> refreshHot(key));
+        }
+
+        return members;
+    }
+
+    private Void refreshHot(MailingListKey key) throws MailingListException
+    {
+        // Skip the reload if the list is already being reloaded (it will be scheduled again when done)
+        if (this.refreshing.add(key)) {
+            try {
+                Route route = this.routingTable.get(key.getProfile());
+                long ttl = this.cache.getTTL(route.getConfiguration());
+                if (ttl > 0) {
+                    loadMembers(route, key, ttl);
+                }
+            } finally {
+                this.refreshing.remove(key);
             }
         }
 
-        return profileConfiguration;
+        return null;
+    }
+
+    private List<String> fetchMembers(Route route, MailingListKey key) throws MailingListException
+    {
+        List<String> members = route.getConnector().getMembers(route.getConfiguration(), key.getMailingList());
+
+        // Include the modifications not yet sent to the connector
+        return this.journal.applyPending(key, members);
+    }
+
+    @Override
+    public boolean isMember(String profile, String mailingList, String email) throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        return measure(METHOD_ISMEMBER, route, () -> isMember(route, profile, mailingList, email));
     }
 
-    private MailingListConnector getConnector(Map<String, String> profileConfiguration) throws MailingListException
+    private boolean isMember(Route route, String profile, String mailingList, String email)
+        throws MailingListException
     {
-        String connectorHint = profileConfiguration.get("connector");
+        MailingListKey key = new MailingListKey(profile, mailingList);
+
+        long ttl = this.cache.getTTL(route.getConfiguration());
+        if (ttl > 0) {
+            Boolean member = this.index.contains(key, email);
+            if (member != null && this.index.isExpired(key)) {
+                if (this.index.isTooStale(key, getStaleTTL(route, key))) {
+                    // Stale members cannot be served
+                    member = null;
+                } else {
+                    // Answer from the expired index rather than waiting for the connector
+                    refresh(route, key, ttl);
+                }
+            }
+            if (member == null) {
+                // Not indexed yet (or expired)
+                if (restoreMembers(route, key, ttl) == null) {
+                    loadMembers(route, key, ttl);
+                }
+                member = this.index.contains(key, email);
+            }
+
+            if (member != null) {
+                return member;
+            }
+        }
+
+        // The list could not be indexed, look for the address in the members
+        String normalizedEmail = normalize(email);
+        boolean[] found = new boolean[1];
+        forEachMember(route, profile, mailingList, member -> {
+            found[0] = normalize(member).equals(normalizedEmail);
+
+            return !found[0];
+        });
+
+        return found[0];
+    }
+
+    private void refresh(Route route, MailingListKey key, long ttl)
+    {
+        if (this.refreshing.add(key)) {
+            this.executor.async(() -> loadMembers(route, key, ttl))
+                .whenComplete((members, cause) -> this.refreshing.remove(key));
+        }
+    }
+
+    @Override
+    public Map<String, List<String>> getListsForMember(String email) throws MailingListException
+    {
+        if (this.reverseIndex.isRefreshNeeded()) {
+            List<MailingListKey> missingLists = new ArrayList<>();
+            List<MailingListKey> declaredLists = new ArrayList<>();
+            for (MailingListProfileConfiguration profileConfiguration : this.configurations.getProfiles()) {
+                for (String mailingList : this.reverseIndex.getDeclaredLists(profileConfiguration)) {
+                    MailingListKey key = new MailingListKey(profileConfiguration.getProfile(), mailingList);
+                    declaredLists.add(key);
+                    if (!this.reverseIndex.isIndexed(key)) {
+                        missingLists.add(key);
+                    }
+                }
+            }
+
+            if (!missingLists.isEmpty()) {
+                // The answer would be incomplete without these lists
+                this.reverseIndexCalls.execute(missingLists, () -> {
+                    indexLists(missingLists);
+
+                    return null;
+                });
+            }
+
+            this.reverseIndex.refreshed();
+
+            // Reload the other lists in the background
+            declaredLists.removeAll(missingLists);
+            if (!declaredLists.isEmpty()) {
+                this.executor.async(() -> {
+                    indexLists(declaredLists);
+
+                    return null;
+                });
+            }
+        }
+
+        Map<String, List<String>> lists = new TreeMap<>();
+        for (MailingListKey key : this.reverseIndex.get(email)) {
+            lists.computeIfAbsent(key.getProfile(), p -> new ArrayList<>()).add(key.getMailingList());
+        }
+        for (List<String> profileLists : lists.values()) {
+            Collections.sort(profileLists);
+        }
+
+        return lists;
+    }
+
+    private void indexLists(List<MailingListKey> keys) throws MailingListException
+    {
+        Map<String, MailingListException> failures = new ConcurrentHashMap<>();
+
+        // Load the lists in parallel
+        this.executor.forEach(keys, this.reverseIndex.getConcurrency(), (index, key) -> {
+            try {
+                Route route = this.routingTable.get(key.getProfile());
+
+                measure(METHOD_GETMEMBERS, route,
+                    () -> loadMembers(route, key, this.cache.getTTL(route.getConfiguration())));
+            } catch (MailingListException e) {
+                failures.put(key.getProfile() + '/' + key.getMailingList(), e);
+            }
+        });
+
+        if (!failures.isEmpty()) {
+            MailingListException exception =
+                new MailingListException("Failed to index the members of the lists " + failures.keySet());
+            failures.values().forEach(exception::addSuppressed);
+
+            throw exception;
+        }
+    }
+
+    @Override
+    public void forEachMember(String profile, String mailingList, Predicate<String> consumer)
+        throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        measure(METHOD_FOREACHMEMBER, route, () -> {
+            forEachMember(route, profile, mailingList, consumer);
 
-        MailingListConnector connector;
+            return null;
+        });
+    }
+
+    private void forEachMember(Route route, String profile, String mailingList, Predicate<String> consumer)
+        throws MailingListException
+    {
+        MailingListKey key = new MailingListKey(profile, mailingList);
+
+        // Stream the members from the connector unless the complete list is needed anyway, to be cached or to be
+        // merged with the modifications not yet sent to the connector
+        if (this.cache.getTTL(route.getConfiguration()) <= 0 && !this.journal.hasPending(key)) {
+            route.getConnector().forEachMember(route.getConfiguration(), mailingList, consumer);
+        } else {
+            for (String member : getMembers(route, profile, mailingList)) {
+                if (!consumer.test(member)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<String> getMembers(String profile, String mailingList, int offset, int limit)
+        throws MailingListException
+    {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid page [" + offset + ", " + limit + "]");
+        }
+
+        if (limit == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> page = new ArrayList<>(Math.min(limit, 1000));
+        int[] index = new int[1];
+        forEachMember(profile, mailingList, member -> {
+            if (index[0]++ >= offset) {
+                page.add(member);
+            }
+
+            // Stop reading the members as soon as the page is complete
+            return page.size() < limit;
+        });
+
+        return page;
+    }
+
+    @Override
+    public MailingListBulkResult addAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException
+    {
+        return executeAll(METHOD_ADD, profile, mailingList, emails);
+    }
+
+    @Override
+    public MailingListBulkResult deleteAll(String profile, String mailingList, Collection<String> emails)
+        throws MailingListException
+    {
+        return executeAll(METHOD_DELETE, profile, mailingList, emails);
+    }
+
+    private MailingListBulkResult executeAll(String operation, String profile, String mailingList,
+        Collection<String> emails) throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        return measure(operation, route, () -> executeAll(operation, route, profile, mailingList, emails));
+    }
+
+    private MailingListBulkResult executeAll(String operation, Route route, String profile, String mailingList,
+        Collection<String> emails) throws MailingListException
+    {
+        long window = this.coalescer.getWindow(route.getConfiguration());
+        if (window > 0) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(emails.size());
+            for (String email : emails) {
+                futures.add(coalesce(operation, profile, mailingList, email, window));
+            }
+
+            MailingListBulkResult result = new MailingListBulkResult();
+            int index = 0;
+            for (String email : emails) {
+                try {
+                    MailingListExecutor.join(futures.get(index++));
+
+                    result.addSuccess(email);
+                } catch (MailingListException e) {
+                    result.addFailure(email, e);
+                }
+            }
+
+            return result;
+        }
+
+        return applyAll(operation, new MailingListKey(profile, mailingList), emails);
+    }
+
+    private CompletableFuture<Void> coalesce(String operation, String profile, String mailingList, String email,
+        long window)
+    {
+        return this.coalescer.submit(new MailingListKey(profile, mailingList), operation, email, window,
+            this::applyAll);
+    }
+
+    private MailingListBulkResult applyAll(String operation, MailingListKey key, Collection<String> emails)
+        throws MailingListException
+    {
+        Route route = this.routingTable.get(key.getProfile());
+
+        if (this.journal.isEnabled(route.getConfiguration())) {
+            return appendAll(operation, key, emails);
+        }
+
+        MailingListBulkResult result;
+        if (operation.equals(METHOD_ADD)) {
+            result = route.getConnector().addAll(route.getConfiguration(), key.getMailingList(), emails);
+            this.cache.added(key, result.getSucceeded());
+        } else {
+            result = route.getConnector().deleteAll(route.getConfiguration(), key.getMailingList(), emails);
+            this.cache.removed(key, result.getSucceeded());
+        }
+
+        return result;
+    }
+
+    private MailingListBulkResult appendAll(String operation, MailingListKey key, Collection<String> emails)
+    {
+        MailingListBulkResult result = new MailingListBulkResult();
+
+        for (String email : emails) {
+            try {
+                this.journal.append(operation, key, email);
+
+                result.addSuccess(email);
+            } catch (MailingListException e) {
+                result.addFailure(email, e);
+            }
+        }
+
+        if (operation.equals(METHOD_ADD)) {
+            this.cache.added(key, result.getSucceeded());
+        } else {
+            this.cache.removed(key, result.getSucceeded());
+        }
+
+        return result;
+    }
+
+    @Override
+    public MailingListSyncResult sync(String profile, String mailingList, Collection<String> members, boolean dryRun)
+        throws MailingListException
+    {
+        return measure(METHOD_SYNC, this.routingTable.get(profile),
+            () -> syncMembers(profile, mailingList, members, dryRun));
+    }
+
+    private MailingListSyncResult syncMembers(String profile, String mailingList, Collection<String> members,
+        boolean dryRun) throws MailingListException
+    {
+        // Make sure to work with the current state of the list
+        this.cache.invalidate(new MailingListKey(profile, mailingList));
+        List<String> currentMembers = getMembers(profile, mailingList);
+
+        Map<String, String> desired = new LinkedHashMap<>(members.size() * 2);
+        for (String member : members) {
+            if (member != null) {
+                String email = member.trim();
+                if (!email.isEmpty()) {
+                    desired.putIfAbsent(normalize(email), email);
+                }
+            }
+        }
+
+        List<String> toRemove = new ArrayList<>();
+        for (String member : currentMembers) {
+            // Whatever stays in the desired map after this loop is missing from the list
+            if (desired.remove(normalize(member)) == null) {
+                toRemove.add(member);
+            }
+        }
+        List<String> toAdd = new ArrayList<>(desired.values());
+        int unchanged = currentMembers.size() - toRemove.size();
+
+        if (dryRun) {
+            return new MailingListSyncResult(true, toAdd, toRemove, Collections.emptyMap(), unchanged);
+        }
+
+        MailingListBulkResult removeResult = toRemove.isEmpty() ? new MailingListBulkResult()
+            : deleteAll(profile, mailingList, toRemove);
+        MailingListBulkResult addResult =
+            toAdd.isEmpty() ? new MailingListBulkResult() : addAll(profile, mailingList, toAdd);
+
+        Map<String, MailingListException> failed = new LinkedHashMap<>(removeResult.getFailed());
+        failed.putAll(addResult.getFailed());
+
+        return new MailingListSyncResult(false, addResult.getSucceeded(), removeResult.getSucceeded(), failed,
+            unchanged);
+    }
+
+    private <T> T measure(String operation, Route route, Operation<T> call) throws MailingListException
+    {
+        OperationMetrics operationMetrics = this.metrics.get(route.getConfiguration().getProfile(),
+            route.getConfiguration().getConnector(), operation);
+
+        long start = operationMetrics.start();
         try {
-            connector = this.componentManager.getInstance(MailingListConnector.class, connectorHint);
-        } catch (ComponentLookupException e) {
-            throw new MailingListException("Failed to get connector for hint " + connectorHint, e);
+            T result = call.execute();
+
+            operationMetrics.succeeded(start);
+
+            return result;
+        } catch (MailingListException | RuntimeException e) {
+            operationMetrics.failed(start, e);
+
+            throw e;
         }
+    }
 
-        return connector;
+    private static String normalize(String email)
+    {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 
     @Override
-    public void add(String profile, String mailingList, String email) throws MailingListException
+    public CompletableFuture<Void> addAsync(String profile, String mailingList, String email)
+    {
+        Route route;
+        try {
+            route = this.routingTable.get(profile);
+        } catch (MailingListException e) {
+            return failedFuture(e);
+        }
+
+        return measureAsync(METHOD_ADD, route, () -> addAsync(route, profile, mailingList, email));
+    }
+
+    private CompletableFuture<Void> addAsync(Route route, String profile, String mailingList, String email)
     {
-        Map<String, String> profileConfiguration = createConfiguration(profile);
+        long window = this.coalescer.getWindow(route.getConfiguration());
+        if (window > 0) {
+            return coalesce(METHOD_ADD, profile, mailingList, email, window);
+        }
 
-        MailingListConnector connector = getConnector(profileConfiguration);
+        // Journaled modifications must go through the journal to keep their order
+        if (!this.journal.isEnabled(route.getConfiguration())
+            && route.getConnector() instanceof MailingListAsyncConnector) {
+            MailingListAsyncConnector connector = (MailingListAsyncConnector) route.getConnector();
 
-        connector.add(profileConfiguration, mailingList, email);
+            // Collapse identical concurrent additions
+            return mutateAsync(METHOD_ADD, profile, mailingList, email,
+                () -> connector.addAsync(route.getConfiguration(), mailingList, email).thenRun(
+                    () -> this.cache.added(new MailingListKey(profile, mailingList), Collections.singleton(email))));
+        }
+
+        return this.executor.async(() -> {
+            add(route, profile, mailingList, email);
+
+            return null;
+        });
     }
 
     @Override
-    public void delete(String profile, String mailingList, String email) throws MailingListException
+    public CompletableFuture<Void> deleteAsync(String profile, String mailingList, String email)
     {
-        Map<String, String> profileConfiguration = createConfiguration(profile);
+        Route route;
+        try {
+            route = this.routingTable.get(profile);
+        } catch (MailingListException e) {
+            return failedFuture(e);
+        }
 
-        MailingListConnector connector = getConnector(profileConfiguration);
+        return measureAsync(METHOD_DELETE, route, () -> deleteAsync(route, profile, mailingList, email));
+    }
+
+    private CompletableFuture<Void> deleteAsync(Route route, String profile, String mailingList, String email)
+    {
+        long window = this.coalescer.getWindow(route.getConfiguration());
+        if (window > 0) {
+            return coalesce(METHOD_DELETE, profile, mailingList, email, window);
+        }
+
+        // Journaled modifications must go through the journal to keep their order
+        if (!this.journal.isEnabled(route.getConfiguration())
+            && route.getConnector() instanceof MailingListAsyncConnector) {
+            MailingListAsyncConnector connector = (MailingListAsyncConnector) route.getConnector();
 
-        connector.delete(profileConfiguration, mailingList, email);
+            // Collapse identical concurrent deletions
+            return mutateAsync(METHOD_DELETE, profile, mailingList, email,
+                () -> connector.deleteAsync(route.getConfiguration(), mailingList, email).thenRun(
+                    () -> this.cache.removed(new MailingListKey(profile, mailingList), Collections.singleton(email))));
+        }
+
+        return this.executor.async(() -> {
+            delete(route, profile, mailingList, email);
+
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> mutateAsync(String method, String profile, String mailingList, String email,
+        Supplier<CompletableFuture<Void>> mutation)
+    {
+        List<String> key = Arrays.asList(profile, mailingList, normalize(email));
+        MutationCall call = new MutationCall(method);
+
+        // Same rules as #mutate()
+        MutationCall currentCall = this.mutationCalls.compute(key,
+            (k, latest) -> latest != null && latest.method.equals(method) ? latest : call);
+        if (currentCall != call) {
+            return currentCall.future.thenApply(result -> result);
+        }
+
+        return start(mutation).whenComplete((result, cause) -> {
+            if (cause != null) {
+                call.future.completeExceptionally(cause);
+            } else {
+                call.future.complete(null);
+            }
+
+            this.mutationCalls.remove(key, call);
+        });
     }
 
     @Override
-    public List<String> getMembers(String profile, String mailingList) throws MailingListException
+    public void registerHotList(String profile, String mailingList) throws MailingListException
+    {
+        Route route = this.routingTable.get(profile);
+
+        MailingListKey key = new MailingListKey(profile, mailingList);
+        this.refreshScheduler.register(key);
+
+        long ttl = this.cache.getTTL(route.getConfiguration());
+        if (ttl > 0 && this.cache.get(key) == null) {
+            refresh(route, key, ttl);
+        }
+    }
+
+    @Override
+    public void unregisterHotList(String profile, String mailingList)
     {
-        Map<String, String> profileConfiguration = createConfiguration(profile);
+        this.refreshScheduler.unregister(new MailingListKey(profile, mailingList));
+    }
 
-        MailingListConnector connector = getConnector(profileConfiguration);
+    @Override
+    public CompletableFuture<List<String>> getMembersAsync(String profile, String mailingList)
+    {
+        Route route;
+        try {
+            route = this.routingTable.get(profile);
+        } catch (MailingListException e) {
+            return failedFuture(e);
+        }
+
+        return measureAsync(METHOD_GETMEMBERS, route, () -> getMembersAsync(route, profile, mailingList));
+    }
+
+    private CompletableFuture<List<String>> getMembersAsync(Route route, String profile, String mailingList)
+    {
+        MailingListKey key = new MailingListKey(profile, mailingList);
+        long ttl = this.cache.getTTL(route.getConfiguration());
+
+        if (ttl > 0) {
+            // Avoid switching thread when the members are already known
+            List<String> members = this.cache.get(key);
+            if (members == null) {
+                members = getStaleMembers(route, key, ttl);
+            }
+            if (members != null) {
+                return CompletableFuture.completedFuture(members);
+            }
+        }
+
+        if (!(route.getConnector() instanceof MailingListAsyncConnector)) {
+            return this.executor.async(() -> getMembers(route, profile, mailingList));
+        }
+
+        MailingListAsyncConnector connector = (MailingListAsyncConnector) route.getConnector();
+
+        if (ttl <= 0) {
+            return this.getMembersCalls.executeAsync(key,
+                () -> connector.getMembersAsync(route.getConfiguration(), mailingList)
+                    .thenApply(members -> this.journal.applyPending(key, members)));
+        }
+
+        // Share the fetch with the threads asking for the same list at the same time, like #loadMembers()
+        CompletableFuture<List<String>> future = this.getMembersCalls.executeAsync(key, () -> {
+            long version = this.cache.getVersion(key);
+
+            return connector.getMembersAsync(route.getConfiguration(), mailingList)
+                .thenApply(members -> this.cache.put(key, this.journal.applyPending(key, members), ttl, version));
+        });
+
+        return future.whenComplete((members, cause) -> {
+            if (this.refreshScheduler.isHot(key)) {
+                if (cause != null) {
+                    this.refreshScheduler.failed(key, ttl, () -> refreshHot(key));
+                } else {
+                    this.refreshScheduler.loaded(key, ttl, () -> refreshHot(key));
+                }
+            }
+        });
+    }
+
+    @Override
+    public MailingListCacheStatistics getCacheStatistics()
+    {
+        return this.cache.getStatistics();
+    }
+
+    @Override
+    public List<MailingListOperationStatistics> getMetrics()
+    {
+        return this.metrics.getOperations();
+    }
+
+    @Override
+    public MailingListCircuitBreakerStatus getCircuitBreaker(String profile) throws MailingListException
+    {
+        ProfileGuard guard = this.routingTable.get(profile).getGuard();
+
+        return guard != null ? guard.getStatus() : null;
+    }
+
+    @Override
+    public Map<String, MailingListCircuitBreakerStatus> getCircuitBreakers()
+    {
+        return this.routingTable.getCircuitBreakers();
+    }
+
+    private <T> CompletableFuture<T> measureAsync(String operation, Route route, Supplier<CompletableFuture<T>> call)
+    {
+        OperationMetrics operationMetrics = this.metrics.get(route.getConfiguration().getProfile(),
+            route.getConfiguration().getConnector(), operation);
+
+        long start = operationMetrics.start();
+
+        return start(call).whenComplete((result, cause) -> {
+            if (cause != null) {
+                operationMetrics.failed(start, cause);
+            } else {
+                operationMetrics.succeeded(start);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> call)
+    {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return failedFuture(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable cause)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
 
-        return connector.getMembers(profileConfiguration, mailingList);
+        return future;
     }
 }
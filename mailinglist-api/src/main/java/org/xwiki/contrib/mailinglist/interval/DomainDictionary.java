@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assign a stable identifier to each domain so that the addresses of a {@link CompactMemberList} only store a
+ * number instead of their domain. Domains are never removed, which is fine since most addresses share a handful of
+ * domains.
+ * <p>
+ * This class is thread safe, {@link #get(int)} does not lock.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class DomainDictionary
+{
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private volatile String[] domains = new String[16];
+
+    /**
+     * @param domain the domain
+     * @return the identifier of the domain, created if needed
+     */
+    public synchronized int getId(String domain)
+    {
+        Integer id = this.ids.get(domain);
+        if (id == null) {
+            id = this.ids.size();
+
+            String[] newDomains = this.domains;
+            if (id == newDomains.length) {
+                newDomains = Arrays.copyOf(newDomains, newDomains.length * 2);
+            }
+            newDomains[id] = domain;
+            // Publish the new domain to the readers
+            this.domains = newDomains;
+
+            this.ids.put(domain, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * @param id the identifier returned by {@link #getId(String)}
+     * @return the domain
+     */
+    public String get(int id)
+    {
+        return this.domains[id];
+    }
+
+    /**
+     * @return the number of domains
+     */
+    public synchronized int size()
+    {
+        return this.ids.size();
+    }
+}
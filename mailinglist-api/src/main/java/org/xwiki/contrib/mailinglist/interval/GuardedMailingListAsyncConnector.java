@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.xwiki.contrib.mailinglist.MailingListAsyncConnector;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Execute the calls to an asynchronous connector through the {@link ProfileGuard} of the profile.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class GuardedMailingListAsyncConnector extends GuardedMailingListConnector implements MailingListAsyncConnector
+{
+    /**
+     * @param connector the connector to protect, must implement {@link MailingListAsyncConnector}
+     * @param guard the circuit breaker and bulkhead of the profile
+     */
+    public GuardedMailingListAsyncConnector(MailingListConnector connector, ProfileGuard guard)
+    {
+        super(connector, guard);
+    }
+
+    @Override
+    public CompletableFuture<Void> addAsync(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        String email)
+    {
+        return executeAsync(
+            () -> ((MailingListAsyncConnector) this.connector).addAsync(profileConfiguration, mailingList, email));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(MailingListProfileConfiguration profileConfiguration,
+        String mailingList, String email)
+    {
+        return executeAsync(
+            () -> ((MailingListAsyncConnector) this.connector).deleteAsync(profileConfiguration, mailingList, email));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getMembersAsync(MailingListProfileConfiguration profileConfiguration,
+        String mailingList)
+    {
+        return executeAsync(
+            () -> ((MailingListAsyncConnector) this.connector).getMembersAsync(profileConfiguration, mailingList));
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> operation)
+    {
+        ProfileGuard.Permit permit;
+        try {
+            permit = this.guard.acquire(1);
+        } catch (MailingListException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+
+            return future;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            this.guard.release(permit, e);
+
+            throw e;
+        }
+
+        return future.whenComplete((result, failure) -> this.guard.release(permit, failure));
+    }
+}
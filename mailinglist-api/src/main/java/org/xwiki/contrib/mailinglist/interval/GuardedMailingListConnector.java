@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Execute the calls to a connector through the {@link ProfileGuard} of the profile.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class GuardedMailingListConnector implements MailingListConnector
+{
+    protected final MailingListConnector connector;
+
+    protected final ProfileGuard guard;
+
+    /**
+     * @param connector the connector to protect
+     * @param guard the circuit breaker and bulkhead of the profile
+     */
+    public GuardedMailingListConnector(MailingListConnector connector, ProfileGuard guard)
+    {
+        this.connector = connector;
+        this.guard = guard;
+    }
+
+    @Override
+    public void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+        throws MailingListException
+    {
+        this.guard.execute(() -> {
+            this.connector.add(profileConfiguration, mailingList, email);
+
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+        throws MailingListException
+    {
+        this.guard.execute(() -> {
+            this.connector.delete(profileConfiguration, mailingList, email);
+
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
+        throws MailingListException
+    {
+        return this.guard.execute(() -> this.connector.getMembers(profileConfiguration, mailingList));
+    }
+
+    @Override
+    public void forEachMember(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Predicate<String> consumer) throws MailingListException
+    {
+        this.guard.execute(() -> {
+            this.connector.forEachMember(profileConfiguration, mailingList, consumer);
+
+            return null;
+        });
+    }
+
+    @Override
+    public MailingListBulkResult addAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        return executeAll(profileConfiguration, emails,
+            () -> this.connector.addAll(profileConfiguration, mailingList, emails));
+    }
+
+    @Override
+    public MailingListBulkResult deleteAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        return executeAll(profileConfiguration, emails,
+            () -> this.connector.deleteAll(profileConfiguration, mailingList, emails));
+    }
+
+    private MailingListBulkResult executeAll(MailingListProfileConfiguration profileConfiguration,
+        Collection<String> emails, Supplier<MailingListBulkResult> operation)
+    {
+        // The connector sends up to "concurrency" requests at the same time
+        int slots = Math.min(emails.size(), profileConfiguration.getInt(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY));
+
+        ProfileGuard.Permit permit;
+        try {
+            permit = this.guard.acquire(slots);
+        } catch (MailingListException e) {
+            MailingListBulkResult result = new MailingListBulkResult();
+            for (String email : emails) {
+                result.addFailure(email, e);
+            }
+
+            return result;
+        }
+
+        Throwable failure = null;
+        try {
+            MailingListBulkResult result = operation.get();
+
+            // Individual failures are expected, consider the call failed only when nothing could be done
+            if (result.getSucceeded().isEmpty() && !result.getFailed().isEmpty()) {
+                failure = result.getFailed().values().iterator().next();
+            }
+
+            return result;
+        } catch (RuntimeException e) {
+            failure = e;
+
+            throw e;
+        } finally {
+            this.guard.release(permit, failure);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListTaskExecutor.IndexedTask;
+
+/**
+ * Thread pool shared by the mailing list components to run remote calls concurrently.
+ * <p>
+ * The size of the pool can be configured with the {@code mailinglist.threads} property (16 by default).
+ * <p>
+ * Asynchronous operations are executed on a separate executor based on virtual threads when the JVM supports them
+ * (can be disabled with {@code mailinglist.virtualThreads}), or a thread pool of {@code mailinglist.asyncThreads}
+ * threads (16 by default) otherwise.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MailingListExecutor.class)
+@Singleton
+public class MailingListExecutor implements Initializable, Disposable
+{
+    private static final String PROPERTY_THREADS = "mailinglist.threads";
+
+    private static final int DEFAULT_THREADS = 16;
+
+    private static final String PROPERTY_ASYNCTHREADS = "mailinglist.asyncThreads";
+
+    private static final String PROPERTY_VIRTUALTHREADS = "mailinglist.virtualThreads";
+
+    /**
+     * An operation to execute asynchronously.
+     * 
+     * @param <T> the type of the result
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Operation<T>
+    {
+        /**
+         * @return the result of the operation
+         * @throws MailingListException when the operation failed
+         */
+        T execute() throws MailingListException;
+    }
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Logger logger;
+
+    private ThreadPoolExecutor executor;
+
+    private ExecutorService asyncExecutor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int threads = this.configuration.getProperty(PROPERTY_THREADS, DEFAULT_THREADS);
+        this.executor = createThreadPool("Mailing list executor", threads);
+
+        // Asynchronous operations are mostly waiting for remote servers so use virtual threads when available
+        if (this.configuration.getProperty(PROPERTY_VIRTUALTHREADS, true)) {
+            this.asyncExecutor = createVirtualThreadExecutor();
+        }
+        if (this.asyncExecutor == null) {
+            int asyncThreads = this.configuration.getProperty(PROPERTY_ASYNCTHREADS, DEFAULT_THREADS);
+            this.asyncExecutor = createThreadPool("Mailing list async executor", asyncThreads);
+        }
+    }
+
+    private ThreadPoolExecutor createThreadPool(String name, int threads)
+    {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + ' ' + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        };
+
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+        threadPool.allowCoreThreadTimeOut(true);
+
+        return threadPool;
+    }
+
+    private ExecutorService createVirtualThreadExecutor()
+    {
+        try {
+            // Java 21+
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            // Virtual threads are not supported by this JVM
+        } catch (Exception e) {
+            this.logger.warn("Failed to create a virtual thread executor", e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+        this.asyncExecutor.shutdownNow();
+    }
+
+    /**
+     * Execute the operation using the asynchronous operations executor.
+     * 
+     * @param <T> the type of the result
+     * @param operation the operation to execute
+     * @return the future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> async(Operation<T> operation)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try {
+            this.asyncExecutor.execute(() -> {
+                try {
+                    future.complete(operation.execute());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new MailingListException("Failed to schedule the operation", e));
+        }
+
+        return future;
+    }
+
+    /**
+     * @return the underlying executor
+     */
+    public ExecutorService getExecutorService()
+    {
+        return this.executor;
+    }
+
+    /**
+     * Execute the task for each element of the list with at most {@code concurrency} elements processed at the same
+     * time, and wait for all of them to be processed.
+     * <p>
+     * The calling thread takes part to the work so that the call always progresses even when the pool is saturated
+     * (for example when it's itself called from a pooled thread).
+     * <p>
+     * When the calling thread is interrupted the elements which are not started yet are skipped and the threads still
+     * running a task are interrupted. The method only returns (or throws) once no task is running anymore, so that the
+     * caller can safely read what the tasks produced.
+     * 
+     * @param <I> the type of the elements
+     * @param items the elements to process
+     * @param concurrency the maximum number of elements processed at the same time
+     * @param task the task to execute for each element, it's expected to catch its own exceptions
+     * @throws MailingListException when the task failed with an unexpected exception or the thread was interrupted
+     */
+    public <I> void forEach(List<I> items, int concurrency, IndexedTask<I> task) throws MailingListException
+    {
+        int size = items.size();
+
+        Thread caller = Thread.currentThread();
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(size);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Set<Thread> running = new HashSet<>();
+
+        Runnable worker = () -> {
+            synchronized (running) {
+                running.add(Thread.currentThread());
+            }
+
+            try {
+                for (int index = next.getAndIncrement(); index < size; index = next.getAndIncrement()) {
+                    try {
+                        if (caller.isInterrupted()) {
+                            cancelled.set(true);
+                        }
+                        if (!cancelled.get()) {
+                            task.run(index, items.get(index));
+                        }
+                    } catch (Throwable e) {
+                        if (e instanceof InterruptedException) {
+                            // Don't swallow the interruption and stop processing the remaining elements
+                            cancelled.set(true);
+                            Thread.currentThread().interrupt();
+                        }
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            } finally {
+                // Under the lock so that the thread cannot be interrupted once it stopped working for this call
+                synchronized (running) {
+                    running.remove(Thread.currentThread());
+                }
+            }
+        };
+
+        // The calling thread is one of the workers
+        int helpers = Math.min(concurrency, size) - 1;
+        for (int i = 0; i < helpers; ++i) {
+            try {
+                this.executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // The executor is shutting down, the calling thread will do the work
+                break;
+            }
+        }
+
+        worker.run();
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            // Stop the tasks which are still running and wait for them before giving back the control to the caller
+            cancelled.set(true);
+            synchronized (running) {
+                running.forEach(Thread::interrupt);
+            }
+            awaitUninterruptibly(done);
+
+            Thread.currentThread().interrupt();
+
+            throw new MailingListException("Interrupted while waiting for tasks to finish", e);
+        }
+
+        if (cancelled.get()) {
+            throw new MailingListException("Interrupted while executing tasks");
+        }
+
+        if (error.get() != null) {
+            throw new MailingListException("Unexpected failure while executing tasks", error.get());
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch)
+    {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for the result of a future, unwrapping the cause of its failure.
+     * 
+     * @param <T> the type of the result
+     * @param future the future to wait for
+     * @return the result
+     * @throws MailingListException when the operation failed
+     */
+    public static <T> T join(CompletableFuture<T> future) throws MailingListException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new MailingListException("Interrupted while waiting for the operation result", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof MailingListException) {
+                throw (MailingListException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new MailingListException("Unexpected failure of the operation", cause);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import org.xwiki.contrib.mailinglist.MailingListThrottledException;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+
+/**
+ * Classify the failures of the connectors.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public final class MailingListFailures
+{
+    private MailingListFailures()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param failure the failure
+     * @return true if the failure or one of its causes is a {@link MailingListTransientException}, i.e. if the
+     *         operation can be retried later
+     */
+    public static boolean isTransient(Throwable failure)
+    {
+        return find(failure, MailingListTransientException.class) != null;
+    }
+
+    /**
+     * @param failure the failure
+     * @return true if the failure indicates that the service is unhealthy (transient failure which is not a
+     *         {@link MailingListThrottledException})
+     */
+    public static boolean isServiceFailure(Throwable failure)
+    {
+        Throwable transientFailure = find(failure, MailingListTransientException.class);
+
+        return transientFailure != null && !(transientFailure instanceof MailingListThrottledException);
+    }
+
+    private static Throwable find(Throwable failure, Class<? extends Throwable> type)
+    {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return cause;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+/**
+ * Identify a mailing list in a profile.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public final class MailingListKey
+{
+    private final String profile;
+
+    private final String mailingList;
+
+    private final int hashCode;
+
+    /**
+     * @param profile the profile
+     * @param mailingList the mailing list
+     */
+    public MailingListKey(String profile, String mailingList)
+    {
+        this.profile = profile;
+        this.mailingList = mailingList;
+        this.hashCode = 31 * profile.hashCode() + mailingList.hashCode();
+    }
+
+    /**
+     * @return the profile
+     */
+    public String getProfile()
+    {
+        return this.profile;
+    }
+
+    /**
+     * @return the mailing list
+     */
+    public String getMailingList()
+    {
+        return this.mailingList;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj instanceof MailingListKey) {
+            MailingListKey other = (MailingListKey) obj;
+
+            return this.hashCode == other.hashCode && this.profile.equals(other.profile)
+                && this.mailingList.equals(other.mailingList);
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.profile + '/' + this.mailingList;
+    }
+}
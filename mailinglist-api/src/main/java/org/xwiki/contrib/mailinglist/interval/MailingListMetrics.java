@@ -0,0 +1,177 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListOperationStatistics;
+import org.xwiki.environment.Environment;
+
+/**
+ * Collect the metrics of the mailing list operations per profile, connector and operation.
+ * <p>
+ * The metrics are exposed through JMX (see {@link MailingListMetricsMXBean}) and the script service. They can be
+ * disabled with the {@code mailinglist.metrics} property. The JMX name contains the permanent directory of the wiki
+ * ({@code org.xwiki.contrib.mailinglist:type=Metrics,instance="<directory>"}) so that several wikis running in the
+ * same JVM each expose their own metrics.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MailingListMetrics.class)
+@Singleton
+public class MailingListMetrics implements MailingListMetricsMXBean, Initializable, Disposable
+{
+    /**
+     * The profile and connector used for the metrics which are not specific to a profile.
+     */
+    public static final String GLOBAL = "*";
+
+    private static final String PROPERTY_ENABLED = "mailinglist.metrics";
+
+    private static final String OBJECT_NAME = "org.xwiki.contrib.mailinglist:type=Metrics";
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    private boolean enabled;
+
+    private ObjectName objectName;
+
+    // profile -> connector -> operation (nested to avoid building a key on each call)
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>>> metrics =
+        new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize()
+    {
+        this.enabled = this.configuration.getProperty(PROPERTY_ENABLED, true);
+
+        if (this.enabled) {
+            try {
+                ObjectName name = getObjectName();
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(name)) {
+                    // Left by a previous instance of the component for the same wiki
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+                this.objectName = name;
+            } catch (JMException e) {
+                this.logger.warn("Failed to register the mailing list metrics in JMX", e);
+            }
+        }
+    }
+
+    private ObjectName getObjectName() throws MalformedObjectNameException
+    {
+        File directory = this.environment.getPermanentDirectory();
+
+        return new ObjectName(directory != null
+            ? OBJECT_NAME + ",instance=" + ObjectName.quote(directory.getAbsolutePath()) : OBJECT_NAME);
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (JMException e) {
+                this.logger.warn("Failed to unregister the mailing list metrics from JMX", e);
+            }
+        }
+    }
+
+    /**
+     * @param profile the profile
+     * @param connector the hint of the connector
+     * @param operation the operation
+     * @return the metrics of the operation
+     */
+    public OperationMetrics get(String profile, String connector, String operation)
+    {
+        if (!this.enabled) {
+            return OperationMetrics.NOOP;
+        }
+
+        ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> profileMetrics = this.metrics.get(profile);
+        if (profileMetrics == null) {
+            profileMetrics = this.metrics.computeIfAbsent(profile, p -> new ConcurrentHashMap<>());
+        }
+
+        ConcurrentMap<String, OperationMetrics> connectorMetrics = profileMetrics.get(connector);
+        if (connectorMetrics == null) {
+            connectorMetrics = profileMetrics.computeIfAbsent(connector, c -> new ConcurrentHashMap<>());
+        }
+
+        OperationMetrics operationMetrics = connectorMetrics.get(operation);
+        if (operationMetrics == null) {
+            operationMetrics =
+                connectorMetrics.computeIfAbsent(operation, o -> new OperationMetrics(profile, connector, operation));
+        }
+
+        return operationMetrics;
+    }
+
+    @Override
+    public List<MailingListOperationStatistics> getOperations()
+    {
+        List<MailingListOperationStatistics> statistics = new ArrayList<>();
+        for (ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> profileMetrics : this.metrics.values()) {
+            for (ConcurrentMap<String, OperationMetrics> connectorMetrics : profileMetrics.values()) {
+                for (OperationMetrics operationMetrics : connectorMetrics.values()) {
+                    statistics.add(operationMetrics.getStatistics());
+                }
+            }
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public void reset()
+    {
+        this.metrics.clear();
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListCacheStatistics;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Read-through cache of the mailing lists members.
+ * <p>
+ * The cache is disabled by default: it's enabled for a profile by setting {@code mailinglist.<profile>.membersCacheTTL}
+ * to the number of seconds the entries are kept (for example 60). The modifications made outside of the wiki (from
+ * the provider console, other clients, etc.) are then only visible once the entry expired, and the members of the
+ * cached lists are loaded all at once instead of being streamed from the connector. At most
+ * {@code mailinglist.membersCacheSize} lists (100 by default) are kept, the least recently used being evicted first.
+ * Local modifications are applied to the cached entries right away. Expired entries can still be served while they
+ * are reloaded in the background for {@code mailinglist.<profile>.membersCacheStaleTTL} seconds (0 by default) after
+ * their expiration.
+ * <p>
+ * The members are stored as {@link CompactMemberList}s sharing the same {@link DomainDictionary}, the memory used by
+ * each list being reported in the {@link MailingListCacheStatistics}.
+ * <p>
+ * The loaded lists and the local modifications are also passed to the {@link MembershipIndex} and the
+ * {@link ReverseMembershipIndex}, and the cached lists are saved in the {@link MembershipSnapshotStore} to be restored
+ * after a restart.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MembershipCache.class)
+@Singleton
+public class MembershipCache implements Initializable
+{
+    /**
+     * The number of seconds a list of members is kept in the cache.
+     */
+    public static final String PROPERTY_TTL = "membersCacheTTL";
+
+    private static final long DEFAULT_TTL = 0;
+
+    /**
+     * The number of seconds an expired list of members can still be used while it's reloaded.
+     */
+    public static final String PROPERTY_STALETTL = "membersCacheStaleTTL";
+
+    private static final long DEFAULT_STALETTL = 0;
+
+    private static final String PROPERTY_SIZE = "mailinglist.membersCacheSize";
+
+    private static final int DEFAULT_SIZE = 100;
+
+    private static final class CacheEntry
+    {
+        private final CompactMemberList members;
+
+        private final long expiration;
+
+        CacheEntry(CompactMemberList members, long expiration)
+        {
+            this.members = members;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(long now)
+        {
+            return now - this.expiration >= 0;
+        }
+
+        boolean isTooStale(long now, long staleTTL)
+        {
+            return now - this.expiration >= staleTTL;
+        }
+    }
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private MembershipIndex index;
+
+    @Inject
+    private ReverseMembershipIndex reverseIndex;
+
+    @Inject
+    private MembershipSnapshotStore snapshots;
+
+    private final DomainDictionary domains = new DomainDictionary();
+
+    private Map<MailingListKey, CacheEntry> entries;
+
+    /**
+     * Changed on each local modification of a list so that a fetch started before a modification does not override
+     * its result.
+     * <p>
+     * The versions are only kept for the cached lists (and the lists being fetched): they are removed when a list is
+     * evicted, invalidated or modified while not cached. Versions are taken from {@link #stamps} so that a version
+     * created again after being removed never matches the one a pending fetch started with.
+     */
+    private final ConcurrentMap<MailingListKey, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong stamps = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int size = this.configuration.getProperty(PROPERTY_SIZE, DEFAULT_SIZE);
+
+        this.entries = new LinkedHashMap<MailingListKey, CacheEntry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MailingListKey, CacheEntry> eldest)
+            {
+                if (size() > size) {
+                    evictions.increment();
+                    versions.remove(eldest.getKey());
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @return the number of nanoseconds a list of members should stay in the cache, 0 if it should not be cached
+     */
+    public long getTTL(MailingListProfileConfiguration profileConfiguration)
+    {
+        return TimeUnit.SECONDS.toNanos(profileConfiguration.getLong(PROPERTY_TTL, DEFAULT_TTL));
+    }
+
+    /**
+     * @param key the mailing list
+     * @return the cached members or null if they are not in the cache (or expired)
+     */
+    public List<String> get(MailingListKey key)
+    {
+        CacheEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+
+        if (entry != null && !entry.isExpired(System.nanoTime())) {
+            this.hits.increment();
+
+            return entry.members;
+        }
+
+        this.misses.increment();
+
+        return null;
+    }
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @return the number of nanoseconds an expired list of members can still be used while it's reloaded
+     */
+    public long getStaleTTL(MailingListProfileConfiguration profileConfiguration)
+    {
+        return TimeUnit.SECONDS.toNanos(profileConfiguration.getLong(PROPERTY_STALETTL, DEFAULT_STALETTL));
+    }
+
+    /**
+     * @param key the mailing list
+     * @param staleTTL the number of nanoseconds an expired list can still be used
+     * @return the cached members, even expired, or null if they are not in the cache or expired for too long
+     */
+    public List<String> getStale(MailingListKey key, long staleTTL)
+    {
+        CacheEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+
+        return entry != null && !entry.isTooStale(System.nanoTime(), staleTTL) ? entry.members : null;
+    }
+
+    /**
+     * @param key the mailing list
+     * @return the current version of the list, to pass to {@link #put(MailingListKey, List, long, long)}
+     */
+    public long getVersion(MailingListKey key)
+    {
+        return getVersionCounter(key).get();
+    }
+
+    /**
+     * @param key the mailing list
+     * @param members the members loaded from the connector
+     * @param ttl the number of nanoseconds the members should stay in the cache, 0 to only update the
+     *            {@link ReverseMembershipIndex}
+     * @param version the version of the list before the members were loaded
+     * @return the unmodifiable version of the members
+     */
+    public List<String> put(MailingListKey key, List<String> members, long ttl, long version)
+    {
+        return put(key, members, ttl, ttl, version, true);
+    }
+
+    /**
+     * Cache the members restored from a snapshot, without saving them again.
+     * <p>
+     * The restored members are cached as already expired (for {@code age - ttl} nanoseconds when the snapshot is older
+     * than the TTL) so that they are only served as stale members while the list is reloaded.
+     * 
+     * @param key the mailing list
+     * @param members the members read from the snapshot
+     * @param ttl the number of nanoseconds the members should stay in the cache
+     * @param age the number of nanoseconds since the snapshot was saved
+     * @param version the version of the list before the snapshot was read
+     * @return the unmodifiable version of the members
+     */
+    public List<String> restore(MailingListKey key, List<String> members, long ttl, long age, long version)
+    {
+        return put(key, members, ttl, -Math.max(0, age - ttl), version, false);
+    }
+
+    private List<String> put(MailingListKey key, List<String> members, long ttl, long expiresIn, long version,
+        boolean save)
+    {
+        // Prepare the compact version of the members without holding the lock
+        CompactMemberList compactMembers = ttl > 0 ? CompactMemberList.of(members, this.domains) : null;
+        MembershipIndex.ListIndex listIndex =
+            compactMembers != null ? this.index.create(compactMembers, expiresIn) : null;
+
+        synchronized (this.entries) {
+            // Don't cache the result if the list was modified locally during the fetch (a missing version was removed
+            // by a modification, and the current one may belong to a fetch started after it so it's kept)
+            AtomicLong currentVersion = this.versions.get(key);
+            if (currentVersion != null && currentVersion.get() == version) {
+                if (compactMembers != null) {
+                    this.entries.put(key, new CacheEntry(compactMembers, System.nanoTime() + expiresIn));
+                    this.index.put(key, listIndex);
+                    if (save) {
+                        this.snapshots.changed(key, compactMembers);
+                    }
+                }
+                this.reverseIndex.put(key, members);
+
+                if (!this.entries.containsKey(key)) {
+                    this.versions.remove(key);
+                }
+            }
+        }
+
+        return compactMembers != null ? compactMembers : Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Update the cached list (if any) after members were added.
+     * 
+     * @param key the mailing list
+     * @param emails the added addresses
+     */
+    public void added(MailingListKey key, Collection<String> emails)
+    {
+        synchronized (this.entries) {
+            CompactMemberList members = null;
+            CacheEntry entry = this.entries.get(key);
+            modified(key, entry != null);
+            if (entry != null) {
+                members = entry.members.with(emails);
+
+                this.entries.put(key, new CacheEntry(members, entry.expiration));
+                this.snapshots.changed(key, members);
+            }
+
+            this.index.added(key, emails, members);
+            this.reverseIndex.added(key, emails);
+        }
+    }
+
+    /**
+     * Update the cached list (if any) after members were removed.
+     * 
+     * @param key the mailing list
+     * @param emails the removed addresses
+     */
+    public void removed(MailingListKey key, Collection<String> emails)
+    {
+        synchronized (this.entries) {
+            CompactMemberList members = null;
+            CacheEntry entry = this.entries.get(key);
+            modified(key, entry != null);
+            if (entry != null) {
+                members = entry.members.without(emails);
+
+                this.entries.put(key, new CacheEntry(members, entry.expiration));
+                this.snapshots.changed(key, members);
+            }
+
+            this.index.removed(key, emails, members);
+            this.reverseIndex.removed(key, emails);
+        }
+    }
+
+    /**
+     * Indicate that a local modification was sent to the connector: a fetch started before may not include it while
+     * the modification is not pending anymore, so its result must not be cached.
+     * 
+     * @param key the mailing list
+     */
+    public void applied(MailingListKey key)
+    {
+        synchronized (this.entries) {
+            modified(key, this.entries.containsKey(key));
+        }
+    }
+
+    /**
+     * @param key the mailing list to remove from the cache
+     */
+    public void invalidate(MailingListKey key)
+    {
+        synchronized (this.entries) {
+            modified(key, false);
+
+            this.entries.remove(key);
+            this.index.invalidate(key);
+            this.reverseIndex.invalidate(key);
+            this.snapshots.invalidate(key);
+        }
+    }
+
+    /**
+     * @return the statistics of the cache
+     */
+    public MailingListCacheStatistics getStatistics()
+    {
+        Map<String, Long> memoryUsage = new LinkedHashMap<>();
+        synchronized (this.entries) {
+            for (Map.Entry<MailingListKey, CacheEntry> entry : this.entries.entrySet()) {
+                memoryUsage.put(entry.getKey().getProfile() + '/' + entry.getKey().getMailingList(),
+                    entry.getValue().members.getMemoryUsage());
+            }
+        }
+
+        return new MailingListCacheStatistics(this.hits.sum(), this.misses.sum(), this.evictions.sum(),
+            memoryUsage.size(), memoryUsage);
+    }
+
+    private AtomicLong getVersionCounter(MailingListKey key)
+    {
+        return this.versions.computeIfAbsent(key, k -> new AtomicLong(this.stamps.incrementAndGet()));
+    }
+
+    private void modified(MailingListKey key, boolean cached)
+    {
+        if (cached) {
+            getVersionCounter(key).set(this.stamps.incrementAndGet());
+        } else {
+            // Forgetting the version is enough to reject the pending fetches
+            this.versions.remove(key);
+        }
+    }
+}
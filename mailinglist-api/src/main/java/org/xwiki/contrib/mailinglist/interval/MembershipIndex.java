@@ -0,0 +1,255 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * In-memory index of the members of the mailing lists, used to check if an address is a member of a list without
+ * calling the connector.
+ * <p>
+ * The members of the {@code mailinglist.membershipIndexSize} (100 by default) most recently used lists are kept as a
+ * {@link CompactMemberList} (the same instance as the {@link MembershipCache} when the list is also cached). A
+ * {@link BloomFilter} of the members is kept for 10 times more lists, so that a list whose members were evicted can
+ * still tell that an address is not one of its members. The index is fed by the {@link MembershipCache} with the
+ * loaded lists and the local modifications, and expires with it.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MembershipIndex.class)
+@Singleton
+public class MembershipIndex implements Initializable
+{
+    private static final String PROPERTY_SIZE = "mailinglist.membershipIndexSize";
+
+    private static final int DEFAULT_SIZE = 100;
+
+    private static final int FILTERS_RATIO = 10;
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * The index of the members of a mailing list.
+     * 
+     * @version $Id$
+     */
+    public static final class ListIndex
+    {
+        private CompactMemberList members;
+
+        private final BloomFilter filter;
+
+        private final long expiration;
+
+        private ListIndex(CompactMemberList members, long expiration)
+        {
+            this.members = members;
+            // Leave room for the members added later
+            this.filter = new BloomFilter(Math.max(members.size() * 2, 1024), FALSE_POSITIVE_RATE);
+            this.expiration = expiration;
+
+            for (String member : members) {
+                this.filter.add(normalize(member));
+            }
+        }
+    }
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    /**
+     * The lists whose members set is available.
+     */
+    private Map<MailingListKey, ListIndex> sets;
+
+    /**
+     * All indexed lists, including the ones for which only the filter is left.
+     */
+    private Map<MailingListKey, ListIndex> filters;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int size = this.configuration.getProperty(PROPERTY_SIZE, DEFAULT_SIZE);
+
+        this.sets = new LinkedHashMap<MailingListKey, ListIndex>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MailingListKey, ListIndex> eldest)
+            {
+                if (size() > size) {
+                    // Keep only the filter
+                    eldest.getValue().members = null;
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+        this.filters = new LinkedHashMap<MailingListKey, ListIndex>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MailingListKey, ListIndex> eldest)
+            {
+                if (size() > size * FILTERS_RATIO) {
+                    sets.remove(eldest.getKey());
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Create the index of a list. This can be slow for big lists and is done without holding any lock, the result
+     * being then passed to {@link #put(MailingListKey, ListIndex)}.
+     * 
+     * @param members the members of the mailing list
+     * @param ttl the number of nanoseconds the index is up to date
+     * @return the index
+     */
+    public ListIndex create(CompactMemberList members, long ttl)
+    {
+        return new ListIndex(members, System.nanoTime() + ttl);
+    }
+
+    /**
+     * @param key the mailing list
+     * @param index the index of the members of the mailing list
+     */
+    public synchronized void put(MailingListKey key, ListIndex index)
+    {
+        this.sets.put(key, index);
+        this.filters.put(key, index);
+    }
+
+    /**
+     * @param key the mailing list
+     * @param email the address to look for
+     * @return {@link Boolean#TRUE} or {@link Boolean#FALSE} if the index knows (possibly from an expired state, see
+     *         {@link #isExpired(MailingListKey)}) if the address is a member of the list, null if it does not
+     */
+    public synchronized Boolean contains(MailingListKey key, String email)
+    {
+        ListIndex index = this.filters.get(key);
+        if (index == null) {
+            return null;
+        }
+
+        String normalizedEmail = normalize(email);
+        if (index.members != null) {
+            // Mark the set as recently used
+            this.sets.get(key);
+
+            return index.members.containsNormalized(normalizedEmail);
+        }
+
+        return index.filter.mightContain(normalizedEmail) ? null : Boolean.FALSE;
+    }
+
+    /**
+     * @param key the mailing list
+     * @return true if the index of the list is expired or missing and should be reloaded
+     */
+    public synchronized boolean isExpired(MailingListKey key)
+    {
+        ListIndex index = this.filters.get(key);
+
+        return index == null || System.nanoTime() - index.expiration >= 0;
+    }
+
+    /**
+     * @param key the mailing list
+     * @param staleTTL the number of nanoseconds an expired index can still be used
+     * @return true if the index of the list is missing or expired for too long to be used
+     */
+    public synchronized boolean isTooStale(MailingListKey key, long staleTTL)
+    {
+        ListIndex index = this.filters.get(key);
+
+        return index == null || System.nanoTime() - index.expiration >= Math.max(0, staleTTL);
+    }
+
+    /**
+     * @param key the mailing list
+     * @param emails the addresses added to the list
+     * @param members the members of the list after the modification if known, null otherwise
+     */
+    public synchronized void added(MailingListKey key, Collection<String> emails, CompactMemberList members)
+    {
+        ListIndex index = this.filters.get(key);
+        if (index != null) {
+            for (String email : emails) {
+                index.filter.add(normalize(email));
+            }
+
+            if (index.members != null) {
+                index.members = members != null ? members : index.members.with(emails);
+            }
+        }
+    }
+
+    /**
+     * @param key the mailing list
+     * @param emails the addresses removed from the list
+     * @param members the members of the list after the modification if known, null otherwise
+     */
+    public synchronized void removed(MailingListKey key, Collection<String> emails, CompactMemberList members)
+    {
+        // A filter cannot forget an element, it will just report a false positive
+        ListIndex index = this.filters.get(key);
+        if (index != null && index.members != null) {
+            index.members = members != null ? members : index.members.without(emails);
+        }
+    }
+
+    /**
+     * @param key the mailing list to remove from the index
+     */
+    public synchronized void invalidate(MailingListKey key)
+    {
+        this.sets.remove(key);
+        this.filters.remove(key);
+    }
+
+    private static String normalize(String email)
+    {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
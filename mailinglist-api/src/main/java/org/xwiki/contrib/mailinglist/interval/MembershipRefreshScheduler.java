@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor.Operation;
+
+/**
+ * Reload the members of the hot mailing lists in the background before they expire from the {@link MembershipCache},
+ * so that reading them never waits for the connector.
+ * <p>
+ * A list is hot when it's declared in the {@code mailinglist.<profile>.hotLists} property (comma separated addresses)
+ * of its profile or registered through {@link #register(MailingListKey)}. Once its members are loaded, a hot list is
+ * reloaded after {@code mailinglist.refreshAhead} percent of the cache TTL (80 by default), minus a random jitter of
+ * up to {@code mailinglist.refreshJitter} percent of the TTL (10 by default) so that the lists loaded at the same time
+ * are not all reloaded at the same time. A failed reload is retried after {@code mailinglist.refreshRetryDelay}
+ * seconds (30 by default, with the same jitter).
+ * <p>
+ * At most {@code mailinglist.refreshConcurrency} lists (2 by default) are reloaded at the same time, each reload
+ * going through the circuit breaker and bulkhead of the profile and the rate limiting of its connector like any other
+ * call.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MembershipRefreshScheduler.class)
+@Singleton
+public class MembershipRefreshScheduler implements Initializable, Disposable
+{
+    /**
+     * The comma separated addresses of the mailing lists of the profile to keep loaded.
+     */
+    public static final String PROPERTY_HOTLISTS = "hotLists";
+
+    private static final String PROPERTY_REFRESHAHEAD = "mailinglist.refreshAhead";
+
+    private static final int DEFAULT_REFRESHAHEAD = 80;
+
+    private static final String PROPERTY_JITTER = "mailinglist.refreshJitter";
+
+    private static final int DEFAULT_JITTER = 10;
+
+    private static final String PROPERTY_RETRYDELAY = "mailinglist.refreshRetryDelay";
+
+    private static final long DEFAULT_RETRYDELAY = 30;
+
+    private static final String PROPERTY_CONCURRENCY = "mailinglist.refreshConcurrency";
+
+    private static final int DEFAULT_CONCURRENCY = 2;
+
+    private static final int PERCENT = 100;
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private ProfileConfigurationCache profiles;
+
+    @Inject
+    private Logger logger;
+
+    private final Set<MailingListKey> registered = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<MailingListKey, ScheduledFuture<?>> scheduled = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        AtomicInteger counter = new AtomicInteger();
+        int concurrency = this.configuration.getProperty(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY);
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "Mailing list refresh " + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * @param key the mailing list
+     * @return true if the list should be reloaded before it expires
+     */
+    public boolean isHot(MailingListKey key)
+    {
+        return this.registered.contains(key)
+            || this.profiles.get(key.getProfile()).getSet(PROPERTY_HOTLISTS).contains(key.getMailingList());
+    }
+
+    /**
+     * @param key the mailing list to keep loaded
+     */
+    public void register(MailingListKey key)
+    {
+        this.registered.add(key);
+    }
+
+    /**
+     * @param key the mailing list to stop reloading (unless it's declared in the configuration)
+     */
+    public void unregister(MailingListKey key)
+    {
+        this.registered.remove(key);
+
+        if (!isHot(key)) {
+            ScheduledFuture<?> future = this.scheduled.remove(key);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Schedule the reload of a list whose members were just loaded.
+     * 
+     * @param key the mailing list
+     * @param ttl the number of nanoseconds the members stay in the cache
+     * @param refresh the reload of the list
+     */
+    public void loaded(MailingListKey key, long ttl, Operation<?> refresh)
+    {
+        long refreshAhead = this.configuration.getProperty(PROPERTY_REFRESHAHEAD, DEFAULT_REFRESHAHEAD);
+
+        schedule(key, ttl / PERCENT * refreshAhead, ttl, refresh);
+    }
+
+    /**
+     * Schedule a new attempt to load a list.
+     * 
+     * @param key the mailing list
+     * @param ttl the number of nanoseconds the members stay in the cache
+     * @param refresh the reload of the list
+     */
+    public void failed(MailingListKey key, long ttl, Operation<?> refresh)
+    {
+        long retryDelay = this.configuration.getProperty(PROPERTY_RETRYDELAY, DEFAULT_RETRYDELAY);
+
+        schedule(key, TimeUnit.SECONDS.toNanos(retryDelay), ttl, refresh);
+    }
+
+    private void schedule(MailingListKey key, long delay, long ttl, Operation<?> refresh)
+    {
+        long jitter = ttl / PERCENT * this.configuration.getProperty(PROPERTY_JITTER, DEFAULT_JITTER);
+        long actualDelay = jitter > 0 ? Math.max(0, delay - ThreadLocalRandom.current().nextLong(jitter)) : delay;
+
+        ScheduledFuture<?> future = this.scheduler.schedule(() -> {
+            // Skip the lists which are not hot anymore
+            if (isHot(key)) {
+                try {
+                    refresh.execute();
+                } catch (MailingListException e) {
+                    this.logger.warn("Failed to reload the members of mailing list [{}] of profile [{}]: {}",
+                        key.getMailingList(), key.getProfile(), e.getMessage());
+                }
+            }
+        }, actualDelay, TimeUnit.NANOSECONDS);
+
+        // Only keep the latest reload of each list
+        ScheduledFuture<?> previous = this.scheduled.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.environment.Environment;
+
+/**
+ * Persist the cached members of the mailing lists in local files so that they can be used right away after a
+ * restart, while they are reloaded from the connector in the background. Restored members are considered expired
+ * since they were saved, so they are only served for the lists which allow stale members (see
+ * {@link MembershipCache#PROPERTY_STALETTL} and the hot lists of the {@link MembershipRefreshScheduler}).
+ * <p>
+ * Each list is stored in its own file in the {@code mailinglist/snapshots} folder of the permanent directory, using a
+ * versioned binary format: a header (magic number, format version, save date, profile and mailing list), the
+ * dictionary of the domains, the members (index of their domain and local part) and a CRC32 checksum of everything
+ * before it. Files are written to a temporary file which then atomically replaces the previous snapshot, and files
+ * which cannot be read or don't match their checksum are deleted.
+ * <p>
+ * The modified lists are saved every {@code mailinglist.snapshotSaveInterval} seconds (30 by default) and when the
+ * component is disposed. Snapshots are enabled by default for the profiles which cache their members and can be
+ * disabled with {@code mailinglist.<profile>.membersSnapshot=false}. Snapshots older than
+ * {@code mailinglist.<profile>.membersSnapshotMaxAge} seconds (one day by default) are ignored.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = MembershipSnapshotStore.class)
+@Singleton
+public class MembershipSnapshotStore implements Initializable, Disposable
+{
+    /**
+     * Enable the snapshots of the members of the profile mailing lists.
+     */
+    public static final String PROPERTY_SNAPSHOT = "membersSnapshot";
+
+    /**
+     * The number of seconds after which a snapshot is too old to be restored.
+     */
+    public static final String PROPERTY_MAXAGE = "membersSnapshotMaxAge";
+
+    private static final long DEFAULT_MAXAGE = TimeUnit.DAYS.toSeconds(1);
+
+    private static final String PROPERTY_SAVEINTERVAL = "mailinglist.snapshotSaveInterval";
+
+    private static final long DEFAULT_SAVEINTERVAL = 30;
+
+    /**
+     * "MLSS" (Mailing List SnapShot).
+     */
+    private static final int MAGIC = 0x4D4C5353;
+
+    private static final short FORMAT_VERSION = 1;
+
+    private static final int NO_DOMAIN = -1;
+
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * The members of a list read from its snapshot.
+     * 
+     * @version $Id$
+     */
+    public static final class Snapshot
+    {
+        private final List<String> members;
+
+        private final long date;
+
+        Snapshot(List<String> members, long date)
+        {
+            this.members = members;
+            this.date = date;
+        }
+
+        /**
+         * @return the members of the list when the snapshot was saved
+         */
+        public List<String> getMembers()
+        {
+            return this.members;
+        }
+
+        /**
+         * @return the date (in milliseconds since the epoch) when the snapshot was saved
+         */
+        public long getDate()
+        {
+            return this.date;
+        }
+    }
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private ProfileConfigurationCache profiles;
+
+    @Inject
+    private Logger logger;
+
+    private File directory;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The lists to save, with their latest members.
+     */
+    private final ConcurrentMap<MailingListKey, List<String>> modified = new ConcurrentHashMap<>();
+
+    /**
+     * The lists whose snapshot was already restored (or looked for), snapshots are only used once after a restart.
+     */
+    private final Set<MailingListKey> restored = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.directory = new File(new File(this.environment.getPermanentDirectory(), "mailinglist"), "snapshots");
+        this.directory.mkdirs();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Mailing list snapshots");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long saveInterval = this.configuration.getProperty(PROPERTY_SAVEINTERVAL, DEFAULT_SAVEINTERVAL);
+        this.scheduler.scheduleWithFixedDelay(this::save, saveInterval, saveInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.scheduler.shutdownNow();
+
+        save();
+    }
+
+    private boolean isEnabled(MailingListKey key)
+    {
+        MailingListProfileConfiguration profileConfiguration = this.profiles.get(key.getProfile());
+
+        return profileConfiguration.getBoolean(PROPERTY_SNAPSHOT, true);
+    }
+
+    /**
+     * Schedule the save of a list.
+     * 
+     * @param key the mailing list
+     * @param members the current members of the list
+     */
+    public void changed(MailingListKey key, List<String> members)
+    {
+        if (isEnabled(key)) {
+            this.modified.put(key, members);
+        }
+    }
+
+    /**
+     * Delete the snapshot of a list.
+     * 
+     * @param key the mailing list
+     */
+    public synchronized void invalidate(MailingListKey key)
+    {
+        this.modified.remove(key);
+
+        File file = getFile(key);
+        if (file.exists() && !file.delete()) {
+            this.logger.warn("Failed to delete the mailing list snapshot [{}]", file);
+        }
+    }
+
+    /**
+     * Read the snapshot of a list, only the first time it's called for this list.
+     * <p>
+     * Snapshots are replaced atomically so they are read without holding the lock used to save them.
+     * 
+     * @param key the mailing list
+     * @return the snapshot of the list, or null if there is no (valid or recent enough) snapshot for the list or if it
+     *         was already restored
+     */
+    public Snapshot restore(MailingListKey key)
+    {
+        if (!this.restored.add(key) || !isEnabled(key)) {
+            return null;
+        }
+
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            Snapshot snapshot = read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), key);
+
+            long maxAge = this.profiles.get(key.getProfile()).getLong(PROPERTY_MAXAGE, DEFAULT_MAXAGE);
+            if (System.currentTimeMillis() - snapshot.getDate() > TimeUnit.SECONDS.toMillis(maxAge)) {
+                this.logger.debug("Ignoring the outdated mailing list snapshot [{}]", file);
+
+                return null;
+            }
+
+            return snapshot;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            this.logger.warn("Deleting invalid mailing list snapshot [{}]: {}", file, e.getMessage());
+
+            file.delete();
+        }
+
+        return null;
+    }
+
+    private synchronized void save()
+    {
+        for (MailingListKey key : new ArrayList<>(this.modified.keySet())) {
+            List<String> members = this.modified.remove(key);
+            if (members != null) {
+                try {
+                    write(key, members);
+                } catch (IOException e) {
+                    this.logger.error("Failed to save the snapshot of mailing list [{}] of profile [{}]",
+                        key.getMailingList(), key.getProfile(), e);
+                }
+            }
+        }
+    }
+
+    private void write(MailingListKey key, List<String> members) throws IOException
+    {
+        File file = getFile(key);
+        File tmpFile = new File(this.directory, file.getName() + ".tmp");
+
+        // Split the addresses in domain and local part
+        Map<String, Integer> domains = new HashMap<>();
+        List<String> domainList = new ArrayList<>();
+        int[] memberDomains = new int[members.size()];
+        String[] localParts = new String[members.size()];
+        for (int i = 0; i < localParts.length; ++i) {
+            String member = members.get(i);
+            int index = member.lastIndexOf('@');
+            if (index != -1) {
+                memberDomains[i] = domains.computeIfAbsent(member.substring(index + 1), domain -> {
+                    domainList.add(domain);
+
+                    return domainList.size() - 1;
+                });
+                localParts[i] = member.substring(0, index);
+            } else {
+                memberDomains[i] = NO_DOMAIN;
+                localParts[i] = member;
+            }
+        }
+
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile)) {
+            DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileStream, checksum)));
+
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, key.getProfile());
+            writeString(out, key.getMailingList());
+
+            out.writeInt(domainList.size());
+            for (String domain : domainList) {
+                writeString(out, domain);
+            }
+
+            out.writeInt(localParts.length);
+            for (int i = 0; i < localParts.length; ++i) {
+                out.writeInt(memberDomains[i]);
+                writeString(out, localParts[i]);
+            }
+
+            out.flush();
+
+            // The checksum is not part of what it covers
+            new DataOutputStream(fileStream).writeLong(checksum.getValue());
+
+            fileStream.getFD().sync();
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Snapshot read(ByteBuffer buffer, MailingListKey key) throws IOException
+    {
+        if (buffer.remaining() < Long.BYTES) {
+            throw new IOException("Truncated file");
+        }
+
+        // Check the integrity of the file before anything else
+        int checksumPosition = buffer.limit() - Long.BYTES;
+        CRC32 checksum = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(checksumPosition);
+        checksum.update(content);
+        if (checksum.getValue() != buffer.getLong(checksumPosition)) {
+            throw new IOException("Checksum mismatch");
+        }
+        buffer.limit(checksumPosition);
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a mailing list snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        long date = buffer.getLong();
+        if (!readString(buffer).equals(key.getProfile()) || !readString(buffer).equals(key.getMailingList())) {
+            throw new IOException("Snapshot of another mailing list");
+        }
+
+        String[] domains = new String[buffer.getInt()];
+        for (int i = 0; i < domains.length; ++i) {
+            domains[i] = readString(buffer);
+        }
+
+        int size = buffer.getInt();
+        List<String> members = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            int domain = buffer.getInt();
+            String localPart = readString(buffer);
+            members.add(domain != NO_DOMAIN ? localPart + '@' + domains[domain] : localPart);
+        }
+
+        return new Snapshot(members, date);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private File getFile(MailingListKey key)
+    {
+        // Profiles and mailing lists can contain characters which are not allowed in file names
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is required to be supported by all Java platforms
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+        digest.update(key.getProfile().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(key.getMailingList().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return new File(this.directory, name.append(EXTENSION).toString());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.contrib.mailinglist.MailingListOperationMetrics;
+import org.xwiki.contrib.mailinglist.MailingListOperationStatistics;
+
+/**
+ * Lock free metrics of an operation: counters, in flight gauge and latency histogram.
+ * <p>
+ * Typical usage:
+ * 
+ * <pre>
+ * long start = metrics.start();
+ * try {
+ *     ...
+ *     metrics.succeeded(start);
+ * } catch (Exception e) {
+ *     metrics.failed(start, reason);
+ *     throw e;
+ * }
+ * </pre>
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class OperationMetrics implements MailingListOperationMetrics
+{
+    /**
+     * Metrics which don't record anything, used when metrics are disabled.
+     */
+    public static final OperationMetrics NOOP = new OperationMetrics(null, null, null)
+    {
+        @Override
+        public long start()
+        {
+            return 0;
+        }
+
+        @Override
+        public void succeeded(long start)
+        {
+            // Disabled
+        }
+
+        @Override
+        public void failed(long start, String reason)
+        {
+            // Disabled
+        }
+    };
+
+    // Bucket i contains the durations lower than 2^i microseconds
+    private static final int BUCKETS = 40;
+
+    private final String profile;
+
+    private final String connector;
+
+    private final String operation;
+
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    private final LongAdder totalTime = new LongAdder();
+
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ConcurrentMap<String, LongAdder> errorsByReason = new ConcurrentHashMap<>();
+
+    OperationMetrics(String profile, String connector, String operation)
+    {
+        this.profile = profile;
+        this.connector = connector;
+        this.operation = operation;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.histogram[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public long start()
+    {
+        this.inFlight.incrementAndGet();
+
+        return System.nanoTime();
+    }
+
+    @Override
+    public void succeeded(long start)
+    {
+        record(start);
+    }
+
+    @Override
+    public void failed(long start, String reason)
+    {
+        record(start);
+
+        this.errors.increment();
+
+        LongAdder counter = this.errorsByReason.get(reason);
+        if (counter == null) {
+            counter = this.errorsByReason.computeIfAbsent(reason, r -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void failed(long start, Throwable cause)
+    {
+        Throwable root = cause;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+
+        failed(start, root.getClass().getSimpleName());
+    }
+
+    private void record(long start)
+    {
+        long duration = System.nanoTime() - start;
+
+        this.inFlight.decrementAndGet();
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(duration);
+        this.histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        this.totalTime.add(duration);
+        this.maxTime.accumulate(duration);
+    }
+
+    /**
+     * @return a snapshot of the metrics
+     */
+    public MailingListOperationStatistics getStatistics()
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = this.histogram[i].sum();
+            count += counts[i];
+        }
+
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.errorsByReason.entrySet()) {
+            reasons.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        double max = toMillis(this.maxTime.get());
+
+        return new MailingListOperationStatistics(this.profile, this.connector, this.operation, count,
+            this.errors.sum(), this.inFlight.get(), count > 0 ? toMillis(this.totalTime.sum()) / count : 0,
+            Math.min(max, percentile(counts, count, 0.5)), Math.min(max, percentile(counts, count, 0.95)),
+            Math.min(max, percentile(counts, count, 0.99)), max, reasons);
+    }
+
+    private static double percentile(long[] counts, long count, double percentile)
+    {
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                // Upper bound of the bucket
+                return (1L << i) / 1000.0;
+            }
+        }
+
+        return 0;
+    }
+
+    private static double toMillis(long nanos)
+    {
+        return nanos / 1000000.0;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Keep compiled {@link MailingListProfileConfiguration} snapshots so that the (potentially big) configuration source
+ * is not scanned on each call.
+ * <p>
+ * All profiles are extracted in a single pass over the configuration keys. The profiles are identified by their
+ * {@code mailinglist.<profile>.connector} property so that their name can contain dots, the other properties being
+ * associated to the longest matching profile (or split at the first dot when no profile matches). The snapshots are
+ * rebuilt when {@link #invalidate()} is called (when a connector is registered or unregistered, see
+ * {@link MailingListComponentListener}) or when they are older than the refresh period (
+ * {@code mailinglist.configurationRefreshPeriod} in seconds, 60 by default). A profile which did not change keeps
+ * the same {@link MailingListProfileConfiguration} instance.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = ProfileConfigurationCache.class)
+@Singleton
+public class ProfileConfigurationCache
+{
+    private static final String PREFIX = "mailinglist.";
+
+    private static final String PROPERTY_REFRESHPERIOD = PREFIX + "configurationRefreshPeriod";
+
+    private static final long DEFAULT_REFRESHPERIOD = 60;
+
+    private static final String OPERATION_LOAD = "configuration";
+
+    private static final String SUFFIX_CONNECTOR = '.' + MailingListProfileConfiguration.PROPERTY_CONNECTOR;
+
+    private static final class Snapshot
+    {
+        private final ConcurrentMap<String, MailingListProfileConfiguration> profiles;
+
+        private final long expiration;
+
+        Snapshot(ConcurrentMap<String, MailingListProfileConfiguration> profiles, long expiration)
+        {
+            this.profiles = profiles;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(long now)
+        {
+            return now - this.expiration >= 0;
+        }
+
+        Snapshot expire()
+        {
+            return new Snapshot(this.profiles, System.nanoTime());
+        }
+    }
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private MailingListMetrics metrics;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param profile the name of the profile
+     * @return the configuration of the profile (a new empty one each time if the profile does not exist)
+     */
+    public MailingListProfileConfiguration get(String profile)
+    {
+        MailingListProfileConfiguration profileConfiguration = getSnapshot().profiles.get(profile);
+        if (profileConfiguration == null) {
+            // Don't remember unknown profiles, their name may come from anywhere
+            profileConfiguration = new MailingListProfileConfiguration(profile, Collections.<String, String>emptyMap());
+        }
+
+        return profileConfiguration;
+    }
+
+    /**
+     * @return the configuration of the profiles associated to a connector
+     */
+    public List<MailingListProfileConfiguration> getProfiles()
+    {
+        List<MailingListProfileConfiguration> profiles = new ArrayList<>();
+        for (MailingListProfileConfiguration profileConfiguration : getSnapshot().profiles.values()) {
+            if (profileConfiguration.getConnector() != null) {
+                profiles.add(profileConfiguration);
+            }
+        }
+
+        return profiles;
+    }
+
+    /**
+     * Force the configuration to be reloaded on next access.
+     */
+    public synchronized void invalidate()
+    {
+        if (this.snapshot != null) {
+            this.snapshot = this.snapshot.expire();
+        }
+    }
+
+    private Snapshot getSnapshot()
+    {
+        Snapshot currentSnapshot = this.snapshot;
+
+        if (currentSnapshot == null || currentSnapshot.isExpired(System.nanoTime())) {
+            synchronized (this) {
+                currentSnapshot = this.snapshot;
+                if (currentSnapshot == null || currentSnapshot.isExpired(System.nanoTime())) {
+                    OperationMetrics operationMetrics =
+                        this.metrics.get(MailingListMetrics.GLOBAL, MailingListMetrics.GLOBAL, OPERATION_LOAD);
+                    long start = operationMetrics.start();
+
+                    try {
+                        currentSnapshot = load(currentSnapshot);
+                    } catch (RuntimeException e) {
+                        operationMetrics.failed(start, e);
+
+                        throw e;
+                    }
+                    this.snapshot = currentSnapshot;
+
+                    operationMetrics.succeeded(start);
+                }
+            }
+        }
+
+        return currentSnapshot;
+    }
+
+    private Snapshot load(Snapshot previousSnapshot)
+    {
+        Map<String, Map<String, String>> properties = new HashMap<>();
+
+        List<String> keys = new ArrayList<>();
+        Set<String> knownProfiles = new HashSet<>();
+        for (String key : this.configuration.getKeys()) {
+            if (key.startsWith(PREFIX)) {
+                keys.add(key);
+                if (key.endsWith(SUFFIX_CONNECTOR) && key.length() > PREFIX.length() + SUFFIX_CONNECTOR.length()) {
+                    knownProfiles.add(key.substring(PREFIX.length(), key.length() - SUFFIX_CONNECTOR.length()));
+                }
+            }
+        }
+
+        for (String key : keys) {
+            int index = getProfileEnd(key, knownProfiles);
+            if (index > PREFIX.length()) {
+                String profile = key.substring(PREFIX.length(), index);
+                properties.computeIfAbsent(profile, p -> new HashMap<>()).put(key.substring(index + 1),
+                    this.configuration.getProperty(key, String.class));
+            }
+        }
+
+        ConcurrentMap<String, MailingListProfileConfiguration> profiles = new ConcurrentHashMap<>(properties.size());
+        for (Map.Entry<String, Map<String, String>> entry : properties.entrySet()) {
+            // Keep the same instance when the profile did not change so that what was computed from it stay valid
+            MailingListProfileConfiguration profileConfiguration =
+                previousSnapshot != null ? previousSnapshot.profiles.get(entry.getKey()) : null;
+            if (profileConfiguration == null || !profileConfiguration.asMap().equals(entry.getValue())) {
+                profileConfiguration = new MailingListProfileConfiguration(entry.getKey(), entry.getValue());
+            }
+
+            profiles.put(entry.getKey(), profileConfiguration);
+        }
+
+        long refreshPeriod = this.configuration.getProperty(PROPERTY_REFRESHPERIOD, DEFAULT_REFRESHPERIOD);
+
+        return new Snapshot(profiles, System.nanoTime() + TimeUnit.SECONDS.toNanos(refreshPeriod));
+    }
+
+    private int getProfileEnd(String key, Set<String> knownProfiles)
+    {
+        // Prefer the longest profile declaring a connector
+        for (int index = key.lastIndexOf('.'); index > PREFIX.length(); index = key.lastIndexOf('.', index - 1)) {
+            if (knownProfiles.contains(key.substring(PREFIX.length(), index))) {
+                return index;
+            }
+        }
+
+        return key.indexOf('.', PREFIX.length());
+    }
+}
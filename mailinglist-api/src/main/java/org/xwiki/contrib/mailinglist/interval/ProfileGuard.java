@@ -0,0 +1,403 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus.State;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor.Operation;
+
+/**
+ * Circuit breaker and bulkhead protecting the calls to the connector of a profile.
+ * <p>
+ * The circuit breaker keeps track of the outcome of the last {@code circuitBreakerWindowSize} calls (20 by default).
+ * When at least {@code circuitBreakerMinimumCalls} (10 by default) were recorded and the percentage of failures
+ * reaches {@code circuitBreakerFailureRate} (50 by default, 0 to disable), the following calls fail immediately for
+ * {@code circuitBreakerOpenDuration} milliseconds (30000 by default). A single probe call is then allowed to decide if
+ * the circuit should be closed again or stay open. Only the failures indicating that the service is unhealthy (network
+ * errors, timeouts, server errors) are counted: a rejected address or a missing member is a successful call from the
+ * circuit breaker point of view.
+ * <p>
+ * The bulkhead limits the number of requests in progress to {@code bulkheadSize} (10 by default, 0 to disable), a bulk
+ * call taking as many slots as the number of requests it sends at the same time. A call waits at most
+ * {@code bulkheadTimeout} milliseconds (1000 by default) for free slots before being rejected.
+ * <p>
+ * A guard lives as long as its profile: a change of configuration updates the thresholds in place (see
+ * {@link #configure(MailingListProfileConfiguration)}) so that the state of the circuit and the calls in progress are
+ * not forgotten.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class ProfileGuard
+{
+    /**
+     * The percentage of failed calls which opens the circuit.
+     */
+    public static final String PROPERTY_FAILURERATE = "circuitBreakerFailureRate";
+
+    /**
+     * The minimum number of recorded calls before the failure rate is taken into account.
+     */
+    public static final String PROPERTY_MINIMUMCALLS = "circuitBreakerMinimumCalls";
+
+    /**
+     * The number of recent calls used to compute the failure rate.
+     */
+    public static final String PROPERTY_WINDOWSIZE = "circuitBreakerWindowSize";
+
+    /**
+     * The number of milliseconds during which the circuit stays open.
+     */
+    public static final String PROPERTY_OPENDURATION = "circuitBreakerOpenDuration";
+
+    /**
+     * The maximum number of calls in progress.
+     */
+    public static final String PROPERTY_BULKHEADSIZE = "bulkheadSize";
+
+    /**
+     * The maximum number of milliseconds to wait for a free slot in the bulkhead.
+     */
+    public static final String PROPERTY_BULKHEADTIMEOUT = "bulkheadTimeout";
+
+    /**
+     * The right to execute a call.
+     * 
+     * @version $Id$
+     */
+    public static final class Permit
+    {
+        private final long generation;
+
+        private final boolean probe;
+
+        private final int slots;
+
+        /**
+         * The number of slots taken in the bulkhead (0 if the bulkhead was disabled when the permit was acquired).
+         */
+        private int bulkheadSlots;
+
+        Permit(long generation, boolean probe, int slots)
+        {
+            this.generation = generation;
+            this.probe = probe;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * A semaphore whose number of permits can be reduced while some are acquired.
+     */
+    private static final class Bulkhead extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+
+        Bulkhead()
+        {
+            super(0);
+        }
+
+        void resize(int previousSize, int size)
+        {
+            if (size > previousSize) {
+                release(size - previousSize);
+            } else if (size < previousSize) {
+                // The slots in use are given back on release
+                reducePermits(previousSize - size);
+            }
+        }
+    }
+
+    private final String profile;
+
+    private volatile int failureRate;
+
+    private volatile int minimumCalls;
+
+    private volatile long openDuration;
+
+    private volatile int bulkheadSize;
+
+    private volatile long bulkheadTimeout;
+
+    private final Bulkhead bulkhead = new Bulkhead();
+
+    /**
+     * The number of permits of the bulkhead semaphore, the last positive bulkhead size.
+     */
+    private int bulkheadCapacity;
+
+    private final AtomicInteger activeCalls = new AtomicInteger();
+
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    // The following fields are protected by this
+
+    private boolean[] outcomes;
+
+    private int outcomeIndex;
+
+    private int recordedCalls;
+
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean probing;
+
+    /**
+     * Incremented each time the circuit is opened or closed.
+     */
+    private long generation;
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     */
+    public ProfileGuard(MailingListProfileConfiguration profileConfiguration)
+    {
+        this.profile = profileConfiguration.getProfile();
+
+        configure(profileConfiguration);
+    }
+
+    /**
+     * Apply a new configuration of the profile, keeping the state of the circuit and the calls in progress.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     */
+    public synchronized void configure(MailingListProfileConfiguration profileConfiguration)
+    {
+        this.failureRate = profileConfiguration.getInt(PROPERTY_FAILURERATE, 50);
+        this.minimumCalls = profileConfiguration.getInt(PROPERTY_MINIMUMCALLS, 10);
+        this.openDuration = TimeUnit.MILLISECONDS.toNanos(profileConfiguration.getLong(PROPERTY_OPENDURATION, 30000));
+        this.bulkheadTimeout = profileConfiguration.getLong(PROPERTY_BULKHEADTIMEOUT, 1000);
+
+        int windowSize = Math.max(1, profileConfiguration.getInt(PROPERTY_WINDOWSIZE, 20));
+        if (this.outcomes == null || this.outcomes.length != windowSize) {
+            // The recorded outcomes don't fit the new window
+            this.outcomes = new boolean[windowSize];
+            this.outcomeIndex = 0;
+            this.recordedCalls = 0;
+            this.failedCalls = 0;
+        }
+
+        int size = profileConfiguration.getInt(PROPERTY_BULKHEADSIZE, 10);
+        if (size > 0) {
+            this.bulkhead.resize(this.bulkheadCapacity, size);
+            this.bulkheadCapacity = size;
+        }
+        this.bulkheadSize = size;
+    }
+
+    /**
+     * Execute the operation if the circuit is closed and there is room in the bulkhead.
+     * 
+     * @param <T> the type of the result
+     * @param operation the operation to execute
+     * @return the result of the operation
+     * @throws MailingListException when the operation was rejected or failed
+     */
+    public <T> T execute(Operation<T> operation) throws MailingListException
+    {
+        Permit permit = acquire(1);
+
+        Throwable failure = null;
+        try {
+            return operation.execute();
+        } catch (MailingListException | RuntimeException e) {
+            failure = e;
+
+            throw e;
+        } finally {
+            release(permit, failure);
+        }
+    }
+
+    /**
+     * Reserve the right to execute a call. Must be followed by {@link #release(Permit, Throwable)}.
+     * 
+     * @param slots the number of requests the call will send at the same time (they each take a slot in the
+     *            bulkhead, up to its size)
+     * @return the permit to pass to {@link #release(Permit, Throwable)}
+     * @throws MailingListException when the call is rejected
+     */
+    public Permit acquire(int slots) throws MailingListException
+    {
+        int size = this.bulkheadSize;
+        Permit permit = tryAcquirePermission(size > 0 ? Math.max(1, Math.min(slots, size)) : Math.max(1, slots));
+        if (permit == null) {
+            this.rejectedCalls.increment();
+
+            throw new MailingListTransientException(
+                "The circuit breaker of profile [" + this.profile + "] is open because of too many failures");
+        }
+
+        if (size > 0) {
+            boolean acquired;
+            try {
+                acquired = this.bulkhead.tryAcquire(permit.slots, this.bulkheadTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelPermission(permit);
+
+                throw new MailingListTransientException("Interrupted while waiting for the bulkhead of profile ["
+                    + this.profile + "]", e);
+            }
+
+            if (!acquired) {
+                cancelPermission(permit);
+                this.rejectedCalls.increment();
+
+                throw new MailingListTransientException("Too many concurrent calls for profile [" + this.profile + "]");
+            }
+
+            permit.bulkheadSlots = permit.slots;
+        }
+
+        this.activeCalls.addAndGet(permit.slots);
+
+        return permit;
+    }
+
+    /**
+     * Record the outcome of a call and free the slots reserved by {@link #acquire(int)}. Only the failures indicating
+     * that the service is unhealthy (see {@link MailingListFailures#isServiceFailure(Throwable)}) count as failures
+     * for the circuit breaker: an error caused by the request itself proves that the service is answering.
+     * 
+     * @param permit the permit returned by {@link #acquire(int)}
+     * @param failure the failure of the call or null if it succeeded
+     */
+    public void release(Permit permit, Throwable failure)
+    {
+        this.activeCalls.addAndGet(-permit.slots);
+
+        if (permit.bulkheadSlots > 0) {
+            this.bulkhead.release(permit.bulkheadSlots);
+        }
+
+        record(permit, failure == null || !MailingListFailures.isServiceFailure(failure));
+    }
+
+    private synchronized Permit tryAcquirePermission(int slots)
+    {
+        if (this.state == State.OPEN) {
+            if (System.nanoTime() - this.openedAt < this.openDuration) {
+                return null;
+            }
+
+            this.state = State.HALF_OPEN;
+        }
+
+        if (this.state == State.HALF_OPEN) {
+            // Only one probe at a time
+            if (this.probing) {
+                return null;
+            }
+
+            this.probing = true;
+
+            return new Permit(this.generation, true, slots);
+        }
+
+        return new Permit(this.generation, false, slots);
+    }
+
+    private synchronized void cancelPermission(Permit permit)
+    {
+        if (permit.probe) {
+            this.probing = false;
+        }
+    }
+
+    private synchronized void record(Permit permit, boolean success)
+    {
+        if (permit.probe) {
+            // Only the probe decides if the circuit should be closed again
+            this.probing = false;
+
+            if (success) {
+                // Start from a clean history
+                this.state = State.CLOSED;
+                ++this.generation;
+                this.outcomeIndex = 0;
+                this.recordedCalls = 0;
+                this.failedCalls = 0;
+            } else {
+                open();
+            }
+        } else if (this.state == State.CLOSED && permit.generation == this.generation) {
+            if (this.recordedCalls == this.outcomes.length) {
+                // Forget the oldest outcome
+                if (!this.outcomes[this.outcomeIndex]) {
+                    --this.failedCalls;
+                }
+            } else {
+                ++this.recordedCalls;
+            }
+
+            this.outcomes[this.outcomeIndex] = success;
+            this.outcomeIndex = (this.outcomeIndex + 1) % this.outcomes.length;
+            if (!success) {
+                ++this.failedCalls;
+            }
+
+            if (this.failureRate > 0 && this.recordedCalls >= this.minimumCalls
+                && this.failedCalls * 100 >= this.failureRate * this.recordedCalls) {
+                open();
+            }
+        }
+
+        // Outcomes of calls started before the circuit was last opened or closed are ignored
+    }
+
+    private void open()
+    {
+        this.state = State.OPEN;
+        ++this.generation;
+        this.openedAt = System.nanoTime();
+    }
+
+    /**
+     * @return the current status of the circuit breaker and bulkhead
+     */
+    public synchronized MailingListCircuitBreakerStatus getStatus()
+    {
+        State currentState = this.state;
+        if (currentState == State.OPEN && System.nanoTime() - this.openedAt >= this.openDuration) {
+            // Next call will be a probe
+            currentState = State.HALF_OPEN;
+        }
+
+        return new MailingListCircuitBreakerStatus(this.profile, currentState,
+            this.recordedCalls > 0 ? (double) this.failedCalls / this.recordedCalls : 0, this.recordedCalls,
+            this.activeCalls.get(), Math.max(0, this.bulkheadSize), this.rejectedCalls.sum());
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Index of the mailing lists each address is a member of.
+ * <p>
+ * A list is indexed once its members are loaded (the lists declared in the {@code mailinglist.<profile>.lists}
+ * property of each profile are loaded when the index is first used, the others when their members are cached), and
+ * its entries are then maintained with the local modifications passed by the {@link MembershipCache}. The lookup is
+ * a single read of a concurrent map of immutable sets.
+ * <p>
+ * The declared lists are reloaded every {@code mailinglist.reverseIndexRefreshPeriod} seconds (3600 by default), with
+ * at most {@code mailinglist.reverseIndexConcurrency} (4 by default) lists loaded at the same time.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = ReverseMembershipIndex.class)
+@Singleton
+public class ReverseMembershipIndex
+{
+    /**
+     * The comma separated addresses of the mailing lists of the profile to index.
+     */
+    public static final String PROPERTY_LISTS = "lists";
+
+    private static final String PROPERTY_REFRESHPERIOD = "mailinglist.reverseIndexRefreshPeriod";
+
+    private static final long DEFAULT_REFRESHPERIOD = 3600;
+
+    private static final String PROPERTY_CONCURRENCY = "mailinglist.reverseIndexConcurrency";
+
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    private final ConcurrentMap<String, Set<MailingListKey>> memberships = new ConcurrentHashMap<>();
+
+    /**
+     * The normalized members of each indexed list, protected by this.
+     */
+    private final Map<MailingListKey, CompactStringSet> lists = new HashMap<>();
+
+    private volatile long nextRefresh;
+
+    private volatile boolean refreshed;
+
+    /**
+     * @param profileConfiguration the configuration of a profile
+     * @return the mailing lists declared to be indexed in the profile
+     */
+    public Set<String> getDeclaredLists(MailingListProfileConfiguration profileConfiguration)
+    {
+        return profileConfiguration.getSet(PROPERTY_LISTS);
+    }
+
+    /**
+     * @return the maximum number of lists to load at the same time
+     */
+    public int getConcurrency()
+    {
+        return this.configuration.getProperty(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @return true if the declared lists were never loaded or should be reloaded
+     */
+    public boolean isRefreshNeeded()
+    {
+        return !this.refreshed || System.nanoTime() - this.nextRefresh >= 0;
+    }
+
+    /**
+     * Indicate that the declared lists were just reloaded.
+     */
+    public void refreshed()
+    {
+        long refreshPeriod = this.configuration.getProperty(PROPERTY_REFRESHPERIOD, DEFAULT_REFRESHPERIOD);
+        this.nextRefresh = System.nanoTime() + TimeUnit.SECONDS.toNanos(refreshPeriod);
+        this.refreshed = true;
+    }
+
+    /**
+     * @param email the address
+     * @return the indexed lists the address is a member of
+     */
+    public Set<MailingListKey> get(String email)
+    {
+        Set<MailingListKey> keys = this.memberships.get(normalize(email));
+
+        return keys != null ? keys : Collections.<MailingListKey>emptySet();
+    }
+
+    /**
+     * @param key the mailing list
+     * @return true if the members of the list are indexed
+     */
+    public synchronized boolean isIndexed(MailingListKey key)
+    {
+        return this.lists.containsKey(key);
+    }
+
+    /**
+     * Index (or re-index) a list.
+     * 
+     * @param key the mailing list
+     * @param members the members of the list loaded from the connector
+     */
+    public synchronized void put(MailingListKey key, Collection<String> members)
+    {
+        CompactStringSet previousMembers = this.lists.get(key);
+
+        CompactStringSet currentMembers = new CompactStringSet(members.size());
+        for (String member : members) {
+            String normalizedEmail = normalize(member);
+            if (currentMembers.add(normalizedEmail)
+                && (previousMembers == null || !previousMembers.contains(normalizedEmail))) {
+                link(normalizedEmail, key);
+            }
+        }
+
+        if (previousMembers != null) {
+            previousMembers.forEach(normalizedEmail -> {
+                if (!currentMembers.contains(normalizedEmail)) {
+                    unlink(normalizedEmail, key);
+                }
+            });
+        }
+
+        this.lists.put(key, currentMembers);
+    }
+
+    /**
+     * @param key the mailing list
+     * @param emails the addresses added to the list
+     */
+    public synchronized void added(MailingListKey key, Collection<String> emails)
+    {
+        CompactStringSet members = this.lists.get(key);
+        if (members != null) {
+            for (String email : emails) {
+                String normalizedEmail = normalize(email);
+                if (members.add(normalizedEmail)) {
+                    link(normalizedEmail, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key the mailing list
+     * @param emails the addresses removed from the list
+     */
+    public synchronized void removed(MailingListKey key, Collection<String> emails)
+    {
+        CompactStringSet members = this.lists.get(key);
+        if (members != null) {
+            for (String email : emails) {
+                String normalizedEmail = normalize(email);
+                if (members.remove(normalizedEmail)) {
+                    unlink(normalizedEmail, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key the mailing list to remove from the index
+     */
+    public synchronized void invalidate(MailingListKey key)
+    {
+        CompactStringSet members = this.lists.remove(key);
+        if (members != null) {
+            members.forEach(normalizedEmail -> unlink(normalizedEmail, key));
+        }
+    }
+
+    private void link(String normalizedEmail, MailingListKey key)
+    {
+        // Most addresses are members of a few lists so copying the set on write is cheap
+        this.memberships.compute(normalizedEmail, (email, keys) -> {
+            if (keys == null) {
+                return Collections.singleton(key);
+            }
+
+            Set<MailingListKey> newKeys = new HashSet<>(keys);
+            newKeys.add(key);
+
+            return Collections.unmodifiableSet(newKeys);
+        });
+    }
+
+    private void unlink(String normalizedEmail, MailingListKey key)
+    {
+        this.memberships.computeIfPresent(normalizedEmail, (email, keys) -> {
+            if (keys.size() == 1) {
+                return keys.contains(key) ? null : keys;
+            }
+
+            Set<MailingListKey> newKeys = new HashSet<>(keys);
+            newKeys.remove(key);
+
+            return Collections.unmodifiableSet(newKeys);
+        });
+    }
+
+    private static String normalize(String email)
+    {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
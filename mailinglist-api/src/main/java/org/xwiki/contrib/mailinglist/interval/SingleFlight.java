@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor.Operation;
+
+/**
+ * Make sure concurrent identical operations are executed only once: the threads arriving while an operation is in
+ * progress wait for it and share its result (or exception).
+ * 
+ * @param <K> the type of the key identifying identical operations
+ * @param <V> the type of the result of the operations
+ * @version $Id$
+ * @since 1.1
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param key the key identifying the operation
+     * @param operation the operation to execute if no identical operation is already in progress
+     * @return the result of the operation
+     * @throws MailingListException when the operation failed
+     */
+    public V execute(K key, Operation<V> operation) throws MailingListException
+    {
+        CompletableFuture<V> call = new CompletableFuture<>();
+
+        CompletableFuture<V> currentCall = this.calls.putIfAbsent(key, call);
+        if (currentCall != null) {
+            return MailingListExecutor.join(currentCall);
+        }
+
+        try {
+            V result = operation.execute();
+
+            call.complete(result);
+
+            return result;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            this.calls.remove(key, call);
+        }
+    }
+
+    /**
+     * Same as {@link #execute(Object, Operation)} for an operation which does not block the calling thread.
+     * 
+     * @param key the key identifying the operation
+     * @param operation the operation to start if no identical operation is already in progress
+     * @return the future completed with the result of the operation
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> operation)
+    {
+        CompletableFuture<V> call = new CompletableFuture<>();
+
+        CompletableFuture<V> currentCall = this.calls.putIfAbsent(key, call);
+        if (currentCall != null) {
+            // Don't let the caller complete the shared future
+            return currentCall.thenApply(result -> result);
+        }
+
+        CompletableFuture<V> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((result, cause) -> {
+            if (cause != null) {
+                call.completeExceptionally(cause);
+            } else {
+                call.complete(result);
+            }
+
+            this.calls.remove(key, call);
+        });
+
+        return call.thenApply(result -> result);
+    }
+}
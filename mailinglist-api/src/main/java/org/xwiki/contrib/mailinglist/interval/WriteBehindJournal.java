@@ -0,0 +1,644 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.contrib.mailinglist.interval.ConnectorRoutingTable.Route;
+import org.xwiki.environment.Environment;
+
+/**
+ * Durable write-behind queue of membership modifications, used for profiles with
+ * {@code mailinglist.<profile>.writeBehind=true}.
+ * <p>
+ * Operations are appended to a local journal file and acknowledged right away, then applied to the connector in the
+ * background, in order for each mailing list. The journal is synchronized on disk every
+ * {@code mailinglist.journalSyncInterval} milliseconds (200 by default). An operation failing for a transient reason
+ * (see {@link MailingListTransientException}) is retried with an exponential delay and given up after
+ * {@code mailinglist.journalMaxAttempts} attempts (10 by default), other failures give it up right away. Given up
+ * operations are recorded in {@code journal-failed.log} (next to the journal) with the time and the reason. Applied
+ * operations are compacted out of the file every minute or every 1000 operations and pending ones are replayed on
+ * restart.
+ * <p>
+ * The journal file is only created by the first modification of a write-behind profile. Failing to open it only
+ * affects these modifications.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = WriteBehindJournal.class)
+@Singleton
+public class WriteBehindJournal implements Initializable, Disposable
+{
+    /**
+     * Add a member.
+     */
+    public static final String OPERATION_ADD = "add";
+
+    /**
+     * Remove a member.
+     */
+    public static final String OPERATION_DELETE = "delete";
+
+    /**
+     * Enable the write-behind mode for a profile.
+     */
+    public static final String PROPERTY_WRITEBEHIND = "writeBehind";
+
+    private static final String PROPERTY_SYNCINTERVAL = "mailinglist.journalSyncInterval";
+
+    private static final long DEFAULT_SYNCINTERVAL = 200;
+
+    private static final String PROPERTY_MAXATTEMPTS = "mailinglist.journalMaxAttempts";
+
+    private static final int DEFAULT_MAXATTEMPTS = 10;
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(30);
+
+    private static final long REPLAY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private static final long COMPACTION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String RECORD_OPERATION = "O";
+
+    private static final String RECORD_APPLIED = "A";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final class Entry
+    {
+        private final long sequence;
+
+        private final String operation;
+
+        private final MailingListKey key;
+
+        private final String email;
+
+        private int attempts;
+
+        Entry(long sequence, String operation, MailingListKey key, String email)
+        {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.key = key;
+            this.email = email;
+        }
+    }
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private ConnectorRoutingTable routingTable;
+
+    @Inject
+    private MailingListExecutor executor;
+
+    @Inject
+    private MembershipCache cache;
+
+    @Inject
+    private Logger logger;
+
+    private int maxAttempts;
+
+    private File file;
+
+    private File deadLetterFile;
+
+    private FileChannel channel;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+
+    // The following fields are protected by the lock
+
+    private long nextSequence;
+
+    private boolean dirty;
+
+    private int appliedSinceCompaction;
+
+    private int deadLetterCount;
+
+    private final Map<MailingListKey, Deque<Entry>> pending = new HashMap<>();
+
+    private final Set<MailingListKey> draining = new HashSet<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.maxAttempts = this.configuration.getProperty(PROPERTY_MAXATTEMPTS, DEFAULT_MAXATTEMPTS);
+
+        File directory = new File(this.environment.getPermanentDirectory(), "mailinglist");
+        this.file = new File(directory, "journal.log");
+        this.deadLetterFile = new File(directory, "journal-failed.log");
+
+        // The journal is only opened when used, unless some operations are left from the previous run
+        if (this.file.exists()) {
+            synchronized (this.lock) {
+                try {
+                    open();
+                } catch (IOException e) {
+                    // Don't prevent the profiles which don't use the journal from working
+                    this.logger.error("Failed to load the mailing list journal [{}]", this.file, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        synchronized (this.lock) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdownNow();
+            }
+
+            if (this.channel != null) {
+                try {
+                    this.channel.force(false);
+                    this.channel.close();
+                } catch (IOException e) {
+                    this.logger.error("Failed to close the mailing list journal [{}]", this.file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the journal and start the background tasks. Must be called with the lock held.
+     */
+    private void open() throws IOException
+    {
+        this.file.getParentFile().mkdirs();
+
+        load();
+
+        // Start from a clean file containing only the pending operations
+        compact();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Mailing list journal");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long syncInterval = this.configuration.getProperty(PROPERTY_SYNCINTERVAL, DEFAULT_SYNCINTERVAL);
+        this.scheduler.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        this.scheduler.scheduleWithFixedDelay(this::compactApplied, COMPACTION_INTERVAL, COMPACTION_INTERVAL,
+            TimeUnit.MILLISECONDS);
+
+        // Replay pending operations (give some time to the connectors to be ready)
+        for (MailingListKey key : this.pending.keySet()) {
+            this.draining.add(key);
+            scheduleDrain(key, REPLAY_DELAY);
+        }
+    }
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @return true if the modifications of the profile mailing lists should go through the journal
+     */
+    public boolean isEnabled(MailingListProfileConfiguration profileConfiguration)
+    {
+        return profileConfiguration.getBoolean(PROPERTY_WRITEBEHIND, false);
+    }
+
+    /**
+     * Queue an operation.
+     * 
+     * @param operation the operation ({@link #OPERATION_ADD} or {@link #OPERATION_DELETE})
+     * @param key the mailing list
+     * @param email the address
+     * @throws MailingListException when failing to write the journal
+     */
+    public void append(String operation, MailingListKey key, String email) throws MailingListException
+    {
+        synchronized (this.lock) {
+            if (this.scheduler == null) {
+                try {
+                    open();
+                } catch (IOException e) {
+                    throw new MailingListException("Failed to open the mailing list journal", e);
+                }
+            }
+
+            Entry entry = new Entry(this.nextSequence, operation, key, email);
+
+            try {
+                write(toRecord(entry));
+            } catch (IOException e) {
+                throw new MailingListException("Failed to write the mailing list journal", e);
+            }
+
+            ++this.nextSequence;
+            this.pending.computeIfAbsent(key, k -> new ArrayDeque<>()).add(entry);
+
+            if (this.draining.add(key)) {
+                scheduleDrain(key, 0);
+            }
+        }
+    }
+
+    /**
+     * Apply the operations not yet sent to the connector to a list of members coming from the connector.
+     * 
+     * @param key the mailing list
+     * @param members the members as known by the connector
+     * @return the members including the pending operations
+     */
+    public List<String> applyPending(MailingListKey key, List<String> members)
+    {
+        List<Entry> entries;
+        synchronized (this.lock) {
+            Deque<Entry> queue = this.pending.get(key);
+            if (queue == null || queue.isEmpty()) {
+                return members;
+            }
+            entries = new ArrayList<>(queue);
+        }
+
+        Map<String, String> result = new LinkedHashMap<>(members.size() * 2);
+        for (String member : members) {
+            result.put(member.toLowerCase(Locale.ROOT), member);
+        }
+        for (Entry entry : entries) {
+            if (entry.operation.equals(OPERATION_ADD)) {
+                result.putIfAbsent(entry.email.toLowerCase(Locale.ROOT), entry.email);
+            } else {
+                result.remove(entry.email.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * @param key the mailing list
+     * @return true if some operations on the passed mailing list are not yet applied
+     */
+    public boolean hasPending(MailingListKey key)
+    {
+        synchronized (this.lock) {
+            Deque<Entry> queue = this.pending.get(key);
+
+            return queue != null && !queue.isEmpty();
+        }
+    }
+
+    /**
+     * @return the number of operations not yet applied
+     */
+    public int getPendingCount()
+    {
+        synchronized (this.lock) {
+            int count = 0;
+            for (Deque<Entry> queue : this.pending.values()) {
+                count += queue.size();
+            }
+
+            return count;
+        }
+    }
+
+    private void scheduleDrain(MailingListKey key, long delay)
+    {
+        Runnable drain = () -> {
+            try {
+                this.executor.getExecutorService().execute(() -> drain(key));
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the operations will be replayed on restart
+            }
+        };
+
+        if (delay > 0) {
+            try {
+                this.scheduler.schedule(drain, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the operations will be replayed on restart
+            }
+        } else {
+            drain.run();
+        }
+    }
+
+    private void drain(MailingListKey key)
+    {
+        while (true) {
+            Entry entry;
+            synchronized (this.lock) {
+                Deque<Entry> queue = this.pending.get(key);
+                if (queue == null || queue.isEmpty()) {
+                    this.pending.remove(key);
+                    this.draining.remove(key);
+
+                    return;
+                }
+
+                entry = queue.peek();
+            }
+
+            try {
+                apply(entry);
+
+                // Before the entry stops being pending, so that a fetch started before can't cache a list missing it
+                this.cache.applied(key);
+            } catch (MailingListException e) {
+                ++entry.attempts;
+
+                if (MailingListFailures.isTransient(e) && entry.attempts < this.maxAttempts) {
+                    long delay = Math.min(RETRY_DELAY << Math.min(entry.attempts - 1, 16), MAX_RETRY_DELAY);
+                    this.logger.warn("Failed to apply [{}] of [{}] on mailing list [{}] (attempt {}), retrying in {}s",
+                        entry.operation, entry.email, key, entry.attempts, delay / 1000, e);
+
+                    // Keep the list marked as draining so that the order is preserved
+                    scheduleDrain(key, delay);
+
+                    return;
+                }
+
+                // Retrying a permanent failure would only delay the following operations of the list
+                this.logger.error("Giving up [{}] of [{}] on mailing list [{}] after {} attempts, see [{}]",
+                    entry.operation, entry.email, key, entry.attempts, this.deadLetterFile, e);
+                deadLetter(entry, e);
+
+                // The members cache contains the operation
+                this.cache.invalidate(key);
+            }
+
+            synchronized (this.lock) {
+                this.pending.get(key).poll();
+
+                try {
+                    write(RECORD_APPLIED + SEPARATOR + entry.sequence + '\n');
+
+                    if (++this.appliedSinceCompaction >= COMPACTION_THRESHOLD) {
+                        compact();
+                    }
+                } catch (IOException e) {
+                    this.logger.error("Failed to write the mailing list journal [{}]", this.file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep track of an acknowledged operation which could not be applied so that it can be applied manually.
+     */
+    private void deadLetter(Entry entry, MailingListException cause)
+    {
+        synchronized (this.lock) {
+            try {
+                String record = toRecord(entry);
+                record = record.substring(0, record.length() - 1) + SEPARATOR + System.currentTimeMillis()
+                    + SEPARATOR + encode(String.valueOf(cause.getMessage())) + '\n';
+
+                Files.write(this.deadLetterFile.toPath(), record.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                this.logger.error("Failed to write the mailing list dead letter file [{}]", this.deadLetterFile, e);
+            }
+
+            ++this.deadLetterCount;
+        }
+    }
+
+    /**
+     * @return the number of acknowledged operations given up since the startup, see {@code journal-failed.log}
+     */
+    public int getDeadLetterCount()
+    {
+        synchronized (this.lock) {
+            return this.deadLetterCount;
+        }
+    }
+
+    private void apply(Entry entry) throws MailingListException
+    {
+        Route route = this.routingTable.get(entry.key.getProfile());
+
+        if (entry.operation.equals(OPERATION_ADD)) {
+            route.getConnector().add(route.getConfiguration(), entry.key.getMailingList(), entry.email);
+        } else {
+            route.getConnector().delete(route.getConfiguration(), entry.key.getMailingList(), entry.email);
+        }
+    }
+
+    private void sync()
+    {
+        synchronized (this.lock) {
+            if (this.dirty && this.channel != null) {
+                try {
+                    this.channel.force(false);
+                    this.dirty = false;
+                } catch (IOException e) {
+                    this.logger.error("Failed to synchronize the mailing list journal [{}]", this.file, e);
+                }
+            }
+        }
+    }
+
+    private void compactApplied()
+    {
+        synchronized (this.lock) {
+            if (this.appliedSinceCompaction > 0) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    this.logger.error("Failed to compact the mailing list journal [{}]", this.file, e);
+                }
+            }
+        }
+    }
+
+    private FileChannel openChannel() throws IOException
+    {
+        return FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    }
+
+    private void write(String record) throws IOException
+    {
+        // The channel could not be opened again after the last compaction
+        if (this.channel == null) {
+            this.channel = openChannel();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+
+        this.dirty = true;
+    }
+
+    private void load() throws IOException
+    {
+        // Forget what a previous failed attempt may have loaded
+        this.pending.clear();
+
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+
+        if (this.file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    parseRecord(line, entries);
+                }
+            }
+        }
+
+        for (Entry entry : entries.values()) {
+            this.pending.computeIfAbsent(entry.key, k -> new ArrayDeque<>()).add(entry);
+            this.nextSequence = Math.max(this.nextSequence, entry.sequence + 1);
+        }
+    }
+
+    private void parseRecord(String line, Map<Long, Entry> entries)
+    {
+        String[] fields = line.split(String.valueOf(SEPARATOR));
+
+        try {
+            if (fields[0].equals(RECORD_OPERATION) && fields.length == 6) {
+                long sequence = Long.parseLong(fields[1]);
+                entries.put(sequence, new Entry(sequence, fields[2],
+                    new MailingListKey(decode(fields[3]), decode(fields[4])), decode(fields[5])));
+            } else if (fields[0].equals(RECORD_APPLIED) && fields.length == 2) {
+                entries.remove(Long.parseLong(fields[1]));
+            } else {
+                this.logger.warn("Ignoring invalid mailing list journal record [{}]", line);
+            }
+        } catch (Exception e) {
+            // Most probably a record partially written during a crash
+            this.logger.warn("Ignoring invalid mailing list journal record [{}]", line);
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the pending operations.
+     */
+    private void compact() throws IOException
+    {
+        List<Entry> entries = new ArrayList<>();
+        for (Deque<Entry> queue : this.pending.values()) {
+            entries.addAll(queue);
+        }
+        Collections.sort(entries, (e1, e2) -> Long.compare(e1.sequence, e2.sequence));
+
+        File tmpFile = new File(this.file.getPath() + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : entries) {
+                ByteBuffer buffer = ByteBuffer.wrap(toRecord(entry).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    tmpChannel.write(buffer);
+                }
+            }
+            tmpChannel.force(true);
+        }
+
+        // Some file systems don't allow replacing an open file
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        try {
+            try {
+                Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // Keep appending to the previous journal if it could not be replaced
+            this.channel = null;
+            this.channel = openChannel();
+        }
+
+        this.appliedSinceCompaction = 0;
+        this.dirty = false;
+    }
+
+    private String toRecord(Entry entry) throws UnsupportedEncodingException
+    {
+        return new StringBuilder().append(RECORD_OPERATION).append(SEPARATOR).append(entry.sequence)
+            .append(SEPARATOR).append(entry.operation).append(SEPARATOR).append(encode(entry.key.getProfile()))
+            .append(SEPARATOR).append(encode(entry.key.getMailingList())).append(SEPARATOR)
+            .append(encode(entry.email)).append('\n').toString();
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException
+    {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException
+    {
+        return URLDecoder.decode(value, "UTF-8");
+    }
+}
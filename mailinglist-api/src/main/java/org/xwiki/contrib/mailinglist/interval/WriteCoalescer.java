@@ -0,0 +1,299 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Hold the membership modifications of profiles with {@code mailinglist.<profile>.coalescingWindow} set for the
+ * configured number of milliseconds, and apply them together.
+ * <p>
+ * During the window, an addition followed by a deletion of the same address (or the reverse) cancel each other and
+ * duplicate operations are collapsed into one. The remaining operations are then sent using the bulk methods.
+ * Coalescing assumes that each operation actually changes the membership of the address (subscribe then unsubscribe,
+ * re-imported lists, etc.), which is why it's disabled by default.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = WriteCoalescer.class)
+@Singleton
+public class WriteCoalescer implements Initializable, Disposable
+{
+    /**
+     * Add a member.
+     */
+    public static final String OPERATION_ADD = "add";
+
+    /**
+     * Remove a member.
+     */
+    public static final String OPERATION_DELETE = "delete";
+
+    /**
+     * The number of milliseconds during which the modifications of a mailing list are held (0 to disable).
+     */
+    public static final String PROPERTY_WINDOW = "coalescingWindow";
+
+    /**
+     * Apply a set of operations of the same type.
+     * 
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface BulkOperation
+    {
+        /**
+         * @param operation the operation ({@link #OPERATION_ADD} or {@link #OPERATION_DELETE})
+         * @param key the mailing list
+         * @param emails the addresses
+         * @return the result of the operation for each address
+         * @throws MailingListException when the operation failed globally
+         */
+        MailingListBulkResult execute(String operation, MailingListKey key, Collection<String> emails)
+            throws MailingListException;
+    }
+
+    private static final class PendingOperation
+    {
+        private final String operation;
+
+        private final String email;
+
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+        PendingOperation(String operation, String email)
+        {
+            this.operation = operation;
+            this.email = email;
+        }
+    }
+
+    private static final class Window
+    {
+        private final BulkOperation bulkOperation;
+
+        private final Map<String, PendingOperation> operations = new LinkedHashMap<>();
+
+        Window(BulkOperation bulkOperation)
+        {
+            this.bulkOperation = bulkOperation;
+        }
+    }
+
+    @Inject
+    private MailingListExecutor executor;
+
+    @Inject
+    private Logger logger;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Map<MailingListKey, Window> windows = new HashMap<>();
+
+    @Override
+    public void initialize()
+    {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Mailing list write coalescer");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.scheduler.shutdownNow();
+
+        // Don't leave the callers waiting
+        List<MailingListKey> keys;
+        synchronized (this.windows) {
+            keys = new ArrayList<>(this.windows.keySet());
+        }
+        for (MailingListKey key : keys) {
+            flush(key);
+        }
+    }
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @return the coalescing window of the profile in milliseconds, 0 when disabled
+     */
+    public long getWindow(MailingListProfileConfiguration profileConfiguration)
+    {
+        return profileConfiguration.getLong(PROPERTY_WINDOW, 0);
+    }
+
+    /**
+     * Queue an operation until the end of the mailing list current window.
+     * 
+     * @param key the mailing list
+     * @param operation the operation ({@link #OPERATION_ADD} or {@link #OPERATION_DELETE})
+     * @param email the address
+     * @param window the duration of the window in milliseconds, if none is already open for the mailing list
+     * @param bulkOperation applies the operations at the end of the window, if none is already open for the mailing
+     *            list
+     * @return the future completed when the operation is applied or cancelled by an opposite operation
+     */
+    public CompletableFuture<Void> submit(MailingListKey key, String operation, String email, long window,
+        BulkOperation bulkOperation)
+    {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<CompletableFuture<Void>> cancelled = null;
+
+        synchronized (this.windows) {
+            Window currentWindow = this.windows.get(key);
+            if (currentWindow == null) {
+                currentWindow = new Window(bulkOperation);
+                this.windows.put(key, currentWindow);
+
+                try {
+                    this.scheduler.schedule(() -> scheduleFlush(key), window, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    this.windows.remove(key);
+                    future.completeExceptionally(new MailingListException("Failed to schedule the operation", e));
+
+                    return future;
+                }
+            }
+
+            String normalizedEmail = email.trim().toLowerCase(Locale.ROOT);
+            PendingOperation pendingOperation = currentWindow.operations.get(normalizedEmail);
+            if (pendingOperation == null) {
+                pendingOperation = new PendingOperation(operation, email);
+                currentWindow.operations.put(normalizedEmail, pendingOperation);
+                pendingOperation.futures.add(future);
+            } else if (pendingOperation.operation.equals(operation)) {
+                // Duplicate
+                pendingOperation.futures.add(future);
+            } else {
+                // The operations cancel each other
+                currentWindow.operations.remove(normalizedEmail);
+                cancelled = pendingOperation.futures;
+            }
+        }
+
+        if (cancelled != null) {
+            for (CompletableFuture<Void> cancelledFuture : cancelled) {
+                cancelledFuture.complete(null);
+            }
+            future.complete(null);
+        }
+
+        return future;
+    }
+
+    private void scheduleFlush(MailingListKey key)
+    {
+        try {
+            this.executor.getExecutorService().execute(() -> flush(key));
+        } catch (RejectedExecutionException e) {
+            flush(key);
+        }
+    }
+
+    private void flush(MailingListKey key)
+    {
+        Window window;
+        synchronized (this.windows) {
+            window = this.windows.remove(key);
+        }
+
+        if (window == null || window.operations.isEmpty()) {
+            return;
+        }
+
+        List<PendingOperation> deletes = new ArrayList<>();
+        List<PendingOperation> adds = new ArrayList<>();
+        for (PendingOperation pendingOperation : window.operations.values()) {
+            (pendingOperation.operation.equals(OPERATION_ADD) ? adds : deletes).add(pendingOperation);
+        }
+
+        flush(key, OPERATION_DELETE, deletes, window.bulkOperation);
+        flush(key, OPERATION_ADD, adds, window.bulkOperation);
+    }
+
+    private void flush(MailingListKey key, String operation, List<PendingOperation> pendingOperations,
+        BulkOperation bulkOperation)
+    {
+        if (pendingOperations.isEmpty()) {
+            return;
+        }
+
+        List<String> emails = new ArrayList<>(pendingOperations.size());
+        for (PendingOperation pendingOperation : pendingOperations) {
+            emails.add(pendingOperation.email);
+        }
+
+        MailingListBulkResult result;
+        try {
+            result = bulkOperation.execute(operation, key, emails);
+        } catch (Throwable e) {
+            this.logger.debug("Failed to apply [{}] coalesced [{}] operations on mailing list [{}]", emails.size(),
+                operation, key, e);
+
+            for (PendingOperation pendingOperation : pendingOperations) {
+                complete(pendingOperation, e);
+            }
+
+            return;
+        }
+
+        Map<String, MailingListException> failed = result.getFailed();
+        for (PendingOperation pendingOperation : pendingOperations) {
+            complete(pendingOperation, failed.get(pendingOperation.email));
+        }
+    }
+
+    private void complete(PendingOperation pendingOperation, Throwable failure)
+    {
+        for (CompletableFuture<Void> future : pendingOperation.futures) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(null);
+            }
+        }
+    }
+}
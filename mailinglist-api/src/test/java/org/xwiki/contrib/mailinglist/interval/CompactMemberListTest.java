@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link CompactMemberList}.
+ * 
+ * @version $Id$
+ */
+public class CompactMemberListTest
+{
+    private static final List<String> MEMBERS = Arrays.asList("one@example.org", "Two@Example.org", "local",
+        "caf\u00e9@example.com", "three@example.org");
+
+    private final DomainDictionary domains = new DomainDictionary();
+
+    @Test
+    public void roundTrip()
+    {
+        CompactMemberList list = CompactMemberList.of(MEMBERS, this.domains);
+
+        assertEquals(MEMBERS, list);
+        assertEquals(MEMBERS.size(), list.size());
+        assertEquals("caf\u00e9@example.com", list.get(3));
+        assertEquals(MEMBERS, CompactMemberList.of(list, this.domains));
+        assertEquals(Collections.emptyList(), CompactMemberList.of(Collections.emptyList(), this.domains));
+        assertTrue(list.getMemoryUsage() > 0);
+    }
+
+    @Test
+    public void contains()
+    {
+        CompactMemberList list = CompactMemberList.of(MEMBERS, this.domains);
+
+        // Exact match, as expected from a List
+        assertTrue(list.contains("Two@Example.org"));
+        assertFalse(list.contains("two@example.org"));
+        assertFalse(list.contains(null));
+
+        assertTrue(list.containsNormalized("two@example.org"));
+        assertTrue(list.containsNormalized("local"));
+        assertFalse(list.containsNormalized("four@example.org"));
+    }
+
+    @Test
+    public void withAndWithout()
+    {
+        CompactMemberList list = CompactMemberList.of(MEMBERS, this.domains);
+
+        CompactMemberList modified = list.with(Arrays.asList("ONE@example.org", "four@example.org"))
+            .without(Arrays.asList(" two@example.org", "local"));
+
+        assertEquals(Arrays.asList("one@example.org", "caf\u00e9@example.com", "three@example.org", "four@example.org"),
+            modified);
+        assertTrue(modified.containsNormalized("four@example.org"));
+        assertTrue(modified.contains("four@example.org"));
+        assertFalse(modified.containsNormalized("two@example.org"));
+        assertFalse(modified.contains("Two@Example.org"));
+
+        // The original list is not modified
+        assertEquals(MEMBERS, list);
+
+        // A removed address comes back at its position
+        assertEquals(MEMBERS, modified.without(Arrays.asList("four@example.org"))
+            .with(Arrays.asList("Two@Example.org", "local")));
+    }
+
+    @Test
+    public void overlayIsMerged()
+    {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            members.add("member" + i + "@example.org");
+        }
+
+        CompactMemberList list = CompactMemberList.of(members, this.domains);
+        List<String> expected = new ArrayList<>(members);
+        // More than the minimum size of the overlay
+        for (int i = 0; i < 100; ++i) {
+            String email = "new" + i + "@example.org";
+            list = list.with(Collections.singletonList(email));
+            expected.add(email);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            String email = "member" + i + "@example.org";
+            list = list.without(Collections.singletonList(email));
+            expected.remove(email);
+        }
+
+        assertEquals(expected, list);
+        for (String email : expected) {
+            assertTrue(email, list.containsNormalized(email));
+        }
+        assertFalse(list.containsNormalized("member0@example.org"));
+    }
+
+    @Test
+    public void randomModifications()
+    {
+        Random random = new Random(42);
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            members.add("member" + i + "@domain" + (i % 7) + ".org");
+        }
+
+        CompactMemberList list = CompactMemberList.of(members, this.domains);
+        Set<String> expected = new HashSet<>(members);
+        for (int i = 0; i < 1000; ++i) {
+            String email = "member" + random.nextInt(300) + "@domain" + random.nextInt(7) + ".org";
+            if (random.nextBoolean()) {
+                list = list.with(Collections.singletonList(email.toUpperCase(Locale.ROOT)));
+                if (!expected.contains(email)) {
+                    expected.add(email);
+                }
+            } else {
+                list = list.without(Collections.singletonList(email));
+                expected.remove(email);
+            }
+
+            assertEquals(expected.size(), list.size());
+        }
+
+        Set<String> actual = new HashSet<>();
+        for (String email : list) {
+            actual.add(email.toLowerCase(Locale.ROOT));
+        }
+        assertEquals(expected, actual);
+        for (String email : expected) {
+            assertTrue(email, list.containsNormalized(email));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link CompactStringSet}.
+ * 
+ * @version $Id$
+ */
+public class CompactStringSetTest
+{
+    private static Set<String> toSet(CompactStringSet compactSet)
+    {
+        Set<String> set = new HashSet<>();
+        compactSet.forEach(set::add);
+
+        return set;
+    }
+
+    @Test
+    public void addContainsRemove()
+    {
+        CompactStringSet set = new CompactStringSet(0);
+
+        assertTrue(set.add("one"));
+        assertFalse(set.add("one"));
+        assertTrue(set.add("two"));
+
+        assertEquals(2, set.size());
+        assertTrue(set.contains("one"));
+        assertFalse(set.contains("three"));
+
+        assertTrue(set.remove("one"));
+        assertFalse(set.remove("one"));
+        assertFalse(set.contains("one"));
+        assertTrue(set.contains("two"));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void growsBeyondTheExpectedSize()
+    {
+        CompactStringSet set = new CompactStringSet(2);
+        for (int i = 0; i < 1000; ++i) {
+            set.add("member" + i);
+        }
+
+        assertEquals(1000, set.size());
+        for (int i = 0; i < 1000; ++i) {
+            assertTrue(set.contains("member" + i));
+        }
+    }
+
+    @Test
+    public void removeKeepsTheCollidingElementsReachable()
+    {
+        // Small table and many elements so that removals happen in the middle of clusters, including wrapping ones
+        Random random = new Random(42);
+        for (int round = 0; round < 100; ++round) {
+            CompactStringSet compactSet = new CompactStringSet(4);
+            Set<String> expected = new HashSet<>();
+
+            for (int i = 0; i < 500; ++i) {
+                String element = "m" + random.nextInt(64);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(element), compactSet.remove(element));
+                } else {
+                    assertEquals(expected.add(element), compactSet.add(element));
+                }
+
+                assertEquals(expected.size(), compactSet.size());
+            }
+
+            assertEquals(expected, toSet(compactSet));
+            for (int i = 0; i < 64; ++i) {
+                assertEquals(expected.contains("m" + i), compactSet.contains("m" + i));
+            }
+        }
+    }
+}
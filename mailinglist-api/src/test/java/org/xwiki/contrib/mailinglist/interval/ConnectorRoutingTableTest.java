@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.configuration.internal.MemoryConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus.State;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Validate {@link ConnectorRoutingTable}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({ConnectorRoutingTable.class, ProfileConfigurationCache.class, MailingListMetrics.class})
+public class ConnectorRoutingTableTest
+{
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private MemoryConfigurationSource configuration;
+
+    private ProfileConfigurationCache configurations;
+
+    private ConnectorRoutingTable routingTable;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.configuration = this.componentManager.registerMemoryConfigurationSource();
+        this.configuration.setProperty("mailinglist.test.connector", "test");
+        this.configuration.setProperty("mailinglist.test.circuitBreakerMinimumCalls", "1");
+
+        this.componentManager.registerMockComponent(Environment.class);
+        this.componentManager.registerMockComponent(MailingListConnector.class, "test");
+
+        this.configurations = this.componentManager.getInstance(ProfileConfigurationCache.class);
+        this.routingTable = this.componentManager.getInstance(ConnectorRoutingTable.class);
+    }
+
+    private void reload()
+    {
+        this.configurations.invalidate();
+        this.routingTable.invalidate();
+    }
+
+    @Test
+    public void guardIsKeptWhenTheConfigurationChanges() throws Exception
+    {
+        ProfileGuard guard = this.routingTable.get("test").getGuard();
+        guard.release(guard.acquire(1), new MailingListTransientException("Unavailable"));
+
+        this.configuration.setProperty("mailinglist.test.bulkheadSize", "5");
+        reload();
+
+        ConnectorRoutingTable.Route route = this.routingTable.get("test");
+        assertEquals("5", route.getConfiguration().asMap().get("bulkheadSize"));
+        assertSame(guard, route.getGuard());
+        assertEquals(State.OPEN, guard.getStatus().getState());
+        assertEquals(5, guard.getStatus().getMaxConcurrentCalls());
+    }
+
+    @Test
+    public void guardIsForgottenWithItsProfile() throws Exception
+    {
+        ProfileGuard guard = this.routingTable.get("test").getGuard();
+
+        this.configuration.removeProperty("mailinglist.test.connector");
+        this.configuration.removeProperty("mailinglist.test.circuitBreakerMinimumCalls");
+        reload();
+
+        assertEquals(Collections.emptyMap(), this.routingTable.getCircuitBreakers());
+
+        this.configuration.setProperty("mailinglist.test.connector", "test");
+        reload();
+
+        assertNotSame(guard, this.routingTable.get("test").getGuard());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link MailingListExecutor}.
+ * 
+ * @version $Id$
+ */
+@ComponentList(MailingListExecutor.class)
+public class MailingListExecutorTest
+{
+    private static final int CONCURRENCY = 4;
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private MailingListExecutor executor;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource();
+
+        this.executor = this.componentManager.getInstance(MailingListExecutor.class);
+    }
+
+    private static List<Integer> range(int size)
+    {
+        List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            items.add(i);
+        }
+
+        return items;
+    }
+
+    @Test
+    public void forEachProcessesAllElements() throws Exception
+    {
+        List<Integer> items = range(100);
+        int[] results = new int[items.size()];
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        this.executor.forEach(items, CONCURRENCY, (index, item) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            results[index] = item * 2;
+            running.decrementAndGet();
+        });
+
+        for (int i = 0; i < results.length; ++i) {
+            assertEquals(i * 2, results[i]);
+        }
+        assertTrue(maxRunning.get() <= CONCURRENCY);
+    }
+
+    @Test
+    public void forEachReportsUnexpectedFailures() throws Exception
+    {
+        IllegalStateException failure = new IllegalStateException();
+        AtomicInteger processed = new AtomicInteger();
+
+        try {
+            this.executor.forEach(range(10), CONCURRENCY, (index, item) -> {
+                processed.incrementAndGet();
+                if (item == 5) {
+                    throw failure;
+                }
+            });
+            fail("Should have failed");
+        } catch (MailingListException e) {
+            assertSame(failure, e.getCause());
+        }
+
+        // The other elements are still processed
+        assertEquals(10, processed.get());
+    }
+
+    @Test
+    public void forEachStopsWhenInterrupted() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(CONCURRENCY);
+        AtomicInteger startedTasks = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger runningAfterReturn = new AtomicInteger(-1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        Thread caller = new Thread(() -> {
+            try {
+                this.executor.forEach(range(100), CONCURRENCY, (index, item) -> {
+                    startedTasks.incrementAndGet();
+                    running.incrementAndGet();
+                    try {
+                        started.countDown();
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            } catch (Throwable e) {
+                error.set(e);
+            }
+            runningAfterReturn.set(running.get());
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertNotNull(error.get());
+        assertTrue(error.get() instanceof MailingListException);
+        // All the tasks were stopped before giving the control back
+        assertEquals(0, runningAfterReturn.get());
+        // The remaining elements were skipped
+        assertEquals(CONCURRENCY, startedTasks.get());
+        // The interruption is not swallowed
+        assertTrue(interrupted.get());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link MembershipCache}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({MembershipCache.class, MembershipIndex.class, ReverseMembershipIndex.class,
+    MembershipSnapshotStore.class, ProfileConfigurationCache.class, MailingListMetrics.class})
+public class MembershipCacheTest
+{
+    private static final MailingListKey KEY = new MailingListKey("test", "list@example.com");
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    private static final List<String> MEMBERS = Arrays.asList("one@example.org", "two@example.org");
+
+    private static final String NEW = "new@example.org";
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MembershipCache cache;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource();
+        Environment environment = this.componentManager.registerMockComponent(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        this.cache = this.componentManager.getInstance(MembershipCache.class);
+    }
+
+    @Test
+    public void put()
+    {
+        this.cache.put(KEY, MEMBERS, TTL, this.cache.getVersion(KEY));
+
+        assertEquals(MEMBERS, this.cache.get(KEY));
+    }
+
+    @Test
+    public void putWithoutTTL()
+    {
+        assertEquals(MEMBERS, this.cache.put(KEY, MEMBERS, 0, this.cache.getVersion(KEY)));
+
+        assertNull(this.cache.get(KEY));
+    }
+
+    @Test
+    public void fetchStartedBeforeAnAddIsNotCached()
+    {
+        this.cache.put(KEY, MEMBERS, TTL, this.cache.getVersion(KEY));
+
+        long version = this.cache.getVersion(KEY);
+        this.cache.added(KEY, Collections.singletonList(NEW));
+        // The fetch does not include the new member
+        this.cache.put(KEY, MEMBERS, TTL, version);
+
+        assertEquals(Arrays.asList("one@example.org", "two@example.org", NEW), this.cache.get(KEY));
+    }
+
+    @Test
+    public void fetchStartedBeforeARemoveOfAnUncachedListIsNotCached()
+    {
+        long version = this.cache.getVersion(KEY);
+        this.cache.removed(KEY, Collections.singletonList("one@example.org"));
+        this.cache.put(KEY, MEMBERS, TTL, version);
+
+        assertNull(this.cache.get(KEY));
+    }
+
+    @Test
+    public void fetchStartedBeforeAnAppliedModificationIsNotCached()
+    {
+        this.cache.put(KEY, MEMBERS, TTL, this.cache.getVersion(KEY));
+
+        long version = this.cache.getVersion(KEY);
+        this.cache.applied(KEY);
+        this.cache.put(KEY, Collections.singletonList("one@example.org"), TTL, version);
+
+        assertEquals(MEMBERS, this.cache.get(KEY));
+    }
+
+    @Test
+    public void fetchStartedBeforeAnInvalidationIsNotCached()
+    {
+        this.cache.put(KEY, MEMBERS, TTL, this.cache.getVersion(KEY));
+
+        long version = this.cache.getVersion(KEY);
+        this.cache.invalidate(KEY);
+        // Another fetch starts after the invalidation, creating the version again
+        long newVersion = this.cache.getVersion(KEY);
+        this.cache.put(KEY, MEMBERS, TTL, version);
+
+        assertNull(this.cache.get(KEY));
+
+        this.cache.put(KEY, Collections.singletonList(NEW), TTL, newVersion);
+
+        assertEquals(Collections.singletonList(NEW), this.cache.get(KEY));
+    }
+
+    @Test
+    public void expiredEntriesAreServedAsStale()
+    {
+        // Already expired
+        this.cache.restore(KEY, MEMBERS, TTL, TTL * 2, this.cache.getVersion(KEY));
+
+        assertNull(this.cache.get(KEY));
+        assertNull(this.cache.getStale(KEY, 0));
+        assertEquals(MEMBERS, this.cache.getStale(KEY, TTL * 2));
+    }
+}
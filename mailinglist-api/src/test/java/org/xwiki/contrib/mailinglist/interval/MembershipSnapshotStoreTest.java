@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.configuration.internal.MemoryConfigurationSource;
+import org.xwiki.contrib.mailinglist.interval.MembershipSnapshotStore.Snapshot;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link MembershipSnapshotStore}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({MembershipSnapshotStore.class, ProfileConfigurationCache.class, MailingListMetrics.class})
+public class MembershipSnapshotStoreTest
+{
+    private static final MailingListKey KEY = new MailingListKey("test", "list@example.com");
+
+    private static final MailingListKey OTHER = new MailingListKey("test", "other@example.com");
+
+    private static final List<String> MEMBERS = Arrays.asList("one@example.org", "two@example.com", "local");
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MemoryConfigurationSource configuration;
+
+    private MembershipSnapshotStore store;
+
+    private File directory;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.configuration = this.componentManager.registerMemoryConfigurationSource();
+        this.configuration.setProperty("mailinglist.test.connector", "test");
+
+        Environment environment = this.componentManager.registerMockComponent(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        this.store = this.componentManager.getInstance(MembershipSnapshotStore.class);
+        this.directory = new File(this.folder.getRoot(), "mailinglist/snapshots");
+    }
+
+    /**
+     * @return the file of the saved snapshot
+     */
+    private File save(MailingListKey key, List<String> members)
+    {
+        List<File> previousFiles = Arrays.asList(this.directory.listFiles());
+
+        this.store.changed(key, members);
+        // Save the modified lists
+        this.store.dispose();
+
+        for (File file : this.directory.listFiles()) {
+            if (!previousFiles.contains(file)) {
+                return file;
+            }
+        }
+
+        return null;
+    }
+
+    @Test
+    public void restoreSavedSnapshot()
+    {
+        long before = System.currentTimeMillis();
+        File file = save(KEY, MEMBERS);
+
+        Snapshot snapshot = this.store.restore(KEY);
+
+        assertEquals(MEMBERS, snapshot.getMembers());
+        assertTrue(snapshot.getDate() >= before);
+        assertTrue(file.exists());
+
+        // Only restored once
+        assertNull(this.store.restore(KEY));
+    }
+
+    @Test
+    public void corruptedSnapshotIsDeleted() throws Exception
+    {
+        File file = save(KEY, MEMBERS);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+
+        assertNull(this.store.restore(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void truncatedSnapshotIsDeleted() throws Exception
+    {
+        File file = save(KEY, MEMBERS);
+        Files.write(file.toPath(), Arrays.copyOf(Files.readAllBytes(file.toPath()), 4));
+
+        assertNull(this.store.restore(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void snapshotOfAnotherListIsDeleted() throws Exception
+    {
+        File file = save(KEY, MEMBERS);
+        File otherFile = save(OTHER, MEMBERS);
+        Files.copy(file.toPath(), otherFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertNull(this.store.restore(OTHER));
+        assertFalse(otherFile.exists());
+    }
+
+    @Test
+    public void outdatedSnapshotIsIgnored() throws Exception
+    {
+        this.configuration.setProperty("mailinglist.test.membersSnapshotMaxAge", "0");
+        this.componentManager.<ProfileConfigurationCache>getInstance(ProfileConfigurationCache.class).invalidate();
+
+        File file = save(KEY, MEMBERS);
+        Thread.sleep(5);
+
+        assertNull(this.store.restore(KEY));
+        // Still valid, it will be replaced by the next save
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void disabledSnapshots() throws Exception
+    {
+        this.configuration.setProperty("mailinglist.test.membersSnapshot", "false");
+        this.componentManager.<ProfileConfigurationCache>getInstance(ProfileConfigurationCache.class).invalidate();
+
+        assertNull(save(KEY, MEMBERS));
+        assertNull(this.store.restore(KEY));
+    }
+
+    @Test
+    public void invalidateDeletesTheSnapshot()
+    {
+        File file = save(KEY, MEMBERS);
+
+        this.store.invalidate(KEY);
+
+        assertFalse(file.exists());
+        assertNull(this.store.restore(KEY));
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus;
+import org.xwiki.contrib.mailinglist.MailingListCircuitBreakerStatus.State;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.contrib.mailinglist.interval.ProfileGuard.Permit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link ProfileGuard}.
+ * 
+ * @version $Id$
+ */
+public class ProfileGuardTest
+{
+    private static final MailingListException SERVICE_FAILURE = new MailingListTransientException("Unavailable");
+
+    private static final MailingListException REQUEST_FAILURE = new MailingListException("Unknown member");
+
+    private static MailingListProfileConfiguration getProfileConfiguration(String... properties)
+    {
+        Map<String, String> map = new HashMap<>();
+        map.put(ProfileGuard.PROPERTY_WINDOWSIZE, "4");
+        map.put(ProfileGuard.PROPERTY_MINIMUMCALLS, "4");
+        map.put(ProfileGuard.PROPERTY_OPENDURATION, "60000");
+        map.put(ProfileGuard.PROPERTY_BULKHEADTIMEOUT, "0");
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put(properties[i], properties[i + 1]);
+        }
+
+        return new MailingListProfileConfiguration("test", map);
+    }
+
+    private static void call(ProfileGuard guard, MailingListException failure) throws MailingListException
+    {
+        guard.execute(() -> {
+            if (failure != null) {
+                throw failure;
+            }
+
+            return null;
+        });
+    }
+
+    private static void record(ProfileGuard guard, MailingListException... failures)
+    {
+        for (MailingListException failure : failures) {
+            try {
+                call(guard, failure);
+            } catch (MailingListException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static void assertRejected(ProfileGuard guard, String message)
+    {
+        try {
+            guard.acquire(1);
+            fail("Should have been rejected");
+        } catch (MailingListException e) {
+            assertTrue(e instanceof MailingListTransientException);
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static State getState(ProfileGuard guard)
+    {
+        return guard.getStatus().getState();
+    }
+
+    private static void open(ProfileGuard guard)
+    {
+        record(guard, null, null, SERVICE_FAILURE, SERVICE_FAILURE);
+
+        assertEquals(State.OPEN, getState(guard));
+    }
+
+    @Test
+    public void circuitOpensWhenTheFailureRateIsReached() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration());
+
+        record(guard, null, SERVICE_FAILURE, SERVICE_FAILURE);
+
+        // Not enough calls yet
+        assertEquals(State.CLOSED, getState(guard));
+        assertEquals(3, guard.getStatus().getRecordedCalls());
+
+        record(guard, (MailingListException) null);
+
+        assertEquals(State.OPEN, getState(guard));
+        assertRejected(guard, "circuit breaker");
+        assertEquals(1, guard.getStatus().getRejectedCalls());
+    }
+
+    @Test
+    public void requestFailuresDontOpenTheCircuit() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration());
+
+        record(guard, REQUEST_FAILURE, REQUEST_FAILURE, REQUEST_FAILURE, REQUEST_FAILURE);
+
+        MailingListCircuitBreakerStatus status = guard.getStatus();
+        assertEquals(State.CLOSED, status.getState());
+        assertEquals(0, status.getFailureRate(), 0);
+    }
+
+    @Test
+    public void oldestOutcomesAreForgotten() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration());
+
+        record(guard, SERVICE_FAILURE, null, null, null, null);
+
+        assertEquals(State.CLOSED, getState(guard));
+        assertEquals(4, guard.getStatus().getRecordedCalls());
+        assertEquals(0, guard.getStatus().getFailureRate(), 0);
+    }
+
+    @Test
+    public void successfulProbeClosesTheCircuit() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_OPENDURATION, "1"));
+        open(guard);
+        Thread.sleep(5);
+
+        assertEquals(State.HALF_OPEN, getState(guard));
+
+        Permit probe = guard.acquire(1);
+        // Only one probe at a time
+        assertRejected(guard, "circuit breaker");
+
+        guard.release(probe, null);
+
+        assertEquals(State.CLOSED, getState(guard));
+        assertEquals(0, guard.getStatus().getRecordedCalls());
+    }
+
+    @Test
+    public void failedProbeOpensTheCircuitAgain() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_OPENDURATION, "1"));
+        open(guard);
+        Thread.sleep(5);
+
+        record(guard, SERVICE_FAILURE);
+
+        assertEquals(State.OPEN, guard.getStatus().getState());
+    }
+
+    @Test
+    public void callsStartedBeforeTheCircuitOpenedAreIgnored() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_OPENDURATION, "1"));
+        Permit permit = guard.acquire(1);
+        open(guard);
+        Thread.sleep(5);
+        record(guard, (MailingListException) null);
+
+        assertEquals(State.CLOSED, getState(guard));
+
+        guard.release(permit, SERVICE_FAILURE);
+
+        assertEquals(0, guard.getStatus().getRecordedCalls());
+    }
+
+    @Test
+    public void bulkheadLimitsTheConcurrentCalls() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "2"));
+
+        // A bulk call cannot take more than the whole bulkhead
+        Permit permit = guard.acquire(5);
+
+        assertEquals(2, guard.getStatus().getActiveCalls());
+        assertRejected(guard, "Too many concurrent calls");
+
+        guard.release(permit, null);
+
+        assertEquals(0, guard.getStatus().getActiveCalls());
+        guard.release(guard.acquire(1), null);
+    }
+
+    @Test
+    public void configureKeepsTheStateOfTheCircuit() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration());
+        open(guard);
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_FAILURERATE, "75"));
+
+        assertEquals(State.OPEN, getState(guard));
+    }
+
+    @Test
+    public void configureResetsTheHistoryWhenTheWindowChanges() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration());
+        record(guard, SERVICE_FAILURE, SERVICE_FAILURE);
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_MINIMUMCALLS, "2"));
+
+        // Same window
+        assertEquals(2, guard.getStatus().getRecordedCalls());
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_WINDOWSIZE, "8"));
+
+        assertEquals(0, guard.getStatus().getRecordedCalls());
+    }
+
+    @Test
+    public void configureResizesTheBulkhead() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "2"));
+        Permit first = guard.acquire(1);
+        Permit second = guard.acquire(1);
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "1"));
+        guard.release(first, null);
+
+        // The slots in use are given back to the smaller bulkhead
+        assertRejected(guard, "Too many concurrent calls");
+
+        guard.release(second, null);
+        Permit permit = guard.acquire(1);
+        assertRejected(guard, "Too many concurrent calls");
+        guard.release(permit, null);
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "3"));
+
+        assertEquals(3, guard.getStatus().getMaxConcurrentCalls());
+        guard.release(guard.acquire(3), null);
+    }
+
+    @Test
+    public void bulkheadCanBeDisabledAndEnabledAgain() throws Exception
+    {
+        ProfileGuard guard = new ProfileGuard(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "1"));
+        Permit permit = guard.acquire(1);
+
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "0"));
+
+        assertEquals(0, guard.getStatus().getMaxConcurrentCalls());
+        Permit unlimited = guard.acquire(10);
+        guard.release(unlimited, null);
+
+        // Calls acquired before the bulkhead was disabled still give back their slot
+        guard.release(permit, null);
+        guard.configure(getProfileConfiguration(ProfileGuard.PROPERTY_BULKHEADSIZE, "1"));
+
+        permit = guard.acquire(1);
+        assertRejected(guard, "Too many concurrent calls");
+        guard.release(permit, null);
+    }
+}
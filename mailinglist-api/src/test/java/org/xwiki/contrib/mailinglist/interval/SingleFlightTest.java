@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link SingleFlight}.
+ * 
+ * @version $Id$
+ */
+public class SingleFlightTest
+{
+    private static final String KEY = "key";
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CompletableFuture<String> start(CompletableFuture<String> future)
+    {
+        this.calls.incrementAndGet();
+
+        return future;
+    }
+
+    private FutureTask<String> executeInThread(String key) throws InterruptedException
+    {
+        FutureTask<String> task = new FutureTask<>(() -> this.singleFlight.execute(key, () -> {
+            this.calls.incrementAndGet();
+
+            return "other";
+        }));
+        Thread thread = new Thread(task);
+        thread.start();
+
+        // Wait for the thread to join the call in progress (or to be done)
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED) {
+            Thread.sleep(1);
+        }
+
+        return task;
+    }
+
+    @Test
+    public void asyncCallsAreShared() throws Exception
+    {
+        CompletableFuture<String> operation = new CompletableFuture<>();
+
+        CompletableFuture<String> first = this.singleFlight.executeAsync(KEY, () -> start(operation));
+        CompletableFuture<String> second = this.singleFlight.executeAsync(KEY, () -> start(new CompletableFuture<>()));
+
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        operation.complete("result");
+
+        assertEquals("result", first.get());
+        assertEquals("result", second.get());
+        assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void synchronousCallsJoinAsyncCalls() throws Exception
+    {
+        CompletableFuture<String> operation = new CompletableFuture<>();
+        this.singleFlight.executeAsync(KEY, () -> start(operation));
+
+        FutureTask<String> task = executeInThread(KEY);
+
+        operation.complete("result");
+
+        assertEquals("result", task.get(10, TimeUnit.SECONDS));
+        assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void asyncCallsJoinSynchronousCalls() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FutureTask<String> task = new FutureTask<>(() -> this.singleFlight.execute(KEY, () -> {
+            this.calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "result";
+        }));
+        new Thread(task).start();
+        started.await();
+
+        CompletableFuture<String> future =
+            this.singleFlight.executeAsync(KEY, () -> start(CompletableFuture.completedFuture("other")));
+
+        release.countDown();
+
+        assertEquals("result", task.get(10, TimeUnit.SECONDS));
+        assertEquals("result", future.get(10, TimeUnit.SECONDS));
+        assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void failuresAreShared() throws Exception
+    {
+        CompletableFuture<String> operation = new CompletableFuture<>();
+        this.singleFlight.executeAsync(KEY, () -> start(operation));
+
+        FutureTask<String> task = executeInThread(KEY);
+
+        MailingListException exception = new MailingListException("failed");
+        operation.completeExceptionally(exception);
+
+        try {
+            task.get(10, TimeUnit.SECONDS);
+            fail("Should have failed");
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void differentKeysAreNotShared() throws Exception
+    {
+        this.singleFlight.executeAsync(KEY, () -> start(new CompletableFuture<>()));
+
+        assertEquals("other", executeInThread("otherKey").get(10, TimeUnit.SECONDS));
+        assertEquals(2, this.calls.get());
+    }
+
+    @Test
+    public void completedCallsAreNotShared() throws Exception
+    {
+        assertEquals("result", this.singleFlight.execute(KEY, () -> "result"));
+
+        CompletableFuture<String> future = CompletableFuture.completedFuture("other");
+        assertEquals("other", this.singleFlight.executeAsync(KEY, () -> start(future)).get());
+        assertEquals("other", this.singleFlight.execute(KEY, () -> "other"));
+    }
+
+    @Test
+    public void callersCannotCompleteTheSharedCall() throws Exception
+    {
+        CompletableFuture<String> operation = new CompletableFuture<>();
+
+        CompletableFuture<String> first = this.singleFlight.executeAsync(KEY, () -> start(operation));
+        first.complete("cancelled");
+
+        CompletableFuture<String> second = this.singleFlight.executeAsync(KEY, () -> start(new CompletableFuture<>()));
+        assertFalse(second.isDone());
+
+        operation.complete("result");
+
+        assertEquals("result", second.get());
+        assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void operationsFailingToStartReleaseTheKey() throws Exception
+    {
+        CompletableFuture<String> future = this.singleFlight.executeAsync(KEY, () -> {
+            throw new IllegalStateException();
+        });
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals("result", this.singleFlight.execute(KEY, () -> "result"));
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.configuration.internal.MemoryConfigurationSource;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link WriteBehindJournal}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({WriteBehindJournal.class, ConnectorRoutingTable.class, ProfileConfigurationCache.class,
+    MailingListMetrics.class, MailingListExecutor.class, MembershipCache.class, MembershipIndex.class,
+    ReverseMembershipIndex.class, MembershipSnapshotStore.class})
+public class WriteBehindJournalTest
+{
+    private static final MailingListKey KEY = new MailingListKey("test", "list@example.com");
+
+    private static final String MEMBER = "member@example.org";
+
+    private static final String NEW = "new@example.org";
+
+    /**
+     * Records the operations it receives, optionally waiting to be released or failing.
+     */
+    private static class TestConnector implements MailingListConnector
+    {
+        private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean blocking;
+
+        private volatile MailingListException failure;
+
+        private void execute(String operation) throws MailingListException
+        {
+            if (this.blocking) {
+                try {
+                    this.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (this.failure != null) {
+                throw this.failure;
+            }
+
+            this.operations.add(operation);
+        }
+
+        @Override
+        public void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+            throws MailingListException
+        {
+            execute("add " + mailingList + ' ' + email);
+        }
+
+        @Override
+        public void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+            throws MailingListException
+        {
+            execute("delete " + mailingList + ' ' + email);
+        }
+
+        @Override
+        public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TestConnector connector = new TestConnector();
+
+    private File journalFile;
+
+    @Before
+    public void before() throws Exception
+    {
+        MemoryConfigurationSource configuration = this.componentManager.registerMemoryConfigurationSource();
+        configuration.setProperty("mailinglist.test.connector", "test");
+        configuration.setProperty("mailinglist.test.writeBehind", "true");
+
+        Environment environment = this.componentManager.registerMockComponent(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        this.componentManager.registerComponent(MailingListConnector.class, "test", this.connector);
+
+        this.journalFile = new File(this.folder.getRoot(), "mailinglist/journal.log");
+    }
+
+    @After
+    public void after()
+    {
+        this.connector.release.countDown();
+    }
+
+    private WriteBehindJournal getJournal() throws Exception
+    {
+        return this.componentManager.getInstance(WriteBehindJournal.class);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException
+    {
+        long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - timeout > 0) {
+                fail("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private List<String> readJournal() throws Exception
+    {
+        return Files.readAllLines(this.journalFile.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void journalIsCreatedWhenUsed() throws Exception
+    {
+        WriteBehindJournal journal = getJournal();
+
+        assertFalse(this.journalFile.exists());
+
+        journal.append(WriteBehindJournal.OPERATION_ADD, KEY, NEW);
+
+        assertTrue(this.journalFile.exists());
+    }
+
+    @Test
+    public void operationsAreAppliedInOrder() throws Exception
+    {
+        WriteBehindJournal journal = getJournal();
+
+        journal.append(WriteBehindJournal.OPERATION_ADD, KEY, NEW);
+        journal.append(WriteBehindJournal.OPERATION_DELETE, KEY, MEMBER);
+
+        waitFor(() -> journal.getPendingCount() == 0);
+
+        assertEquals(Arrays.asList("add list@example.com " + NEW, "delete list@example.com " + MEMBER),
+            this.connector.operations);
+        assertFalse(journal.hasPending(KEY));
+    }
+
+    @Test
+    public void pendingOperationsAreAppliedToTheFetchedMembers() throws Exception
+    {
+        this.connector.blocking = true;
+        WriteBehindJournal journal = getJournal();
+
+        journal.append(WriteBehindJournal.OPERATION_ADD, KEY, NEW);
+        journal.append(WriteBehindJournal.OPERATION_DELETE, KEY, MEMBER);
+
+        assertTrue(journal.hasPending(KEY));
+        assertEquals(Arrays.asList("other@example.org", NEW),
+            journal.applyPending(KEY, Arrays.asList("Member@Example.org", "other@example.org")));
+        assertEquals(Arrays.asList(MEMBER),
+            journal.applyPending(new MailingListKey("test", "other@example.com"), Arrays.asList(MEMBER)));
+
+        this.connector.release.countDown();
+        waitFor(() -> journal.getPendingCount() == 0);
+
+        assertEquals(Arrays.asList(MEMBER), journal.applyPending(KEY, Arrays.asList(MEMBER)));
+    }
+
+    @Test
+    public void pendingOperationsAreLoadedAfterRestart() throws Exception
+    {
+        this.journalFile.getParentFile().mkdirs();
+        Files.write(this.journalFile.toPath(),
+            Arrays.asList("O\t0\tadd\ttest\tlist%40example.com\tnew%40example.org",
+                "O\t1\tdelete\ttest\tlist%40example.com\tmember%40example.org", "A\t0",
+                // Partially written before a crash
+                "O\t2\tad"),
+            StandardCharsets.UTF_8);
+
+        WriteBehindJournal journal = getJournal();
+
+        assertEquals(1, journal.getPendingCount());
+        assertEquals(Arrays.asList(NEW), journal.applyPending(KEY, Arrays.asList(NEW, MEMBER)));
+        // The applied and invalid records are compacted out of the journal
+        assertEquals(Arrays.asList("O\t1\tdelete\ttest\tlist%40example.com\tmember%40example.org"), readJournal());
+
+        // New operations come after the loaded ones
+        this.connector.blocking = true;
+        journal.append(WriteBehindJournal.OPERATION_ADD, KEY, MEMBER);
+
+        assertEquals(Arrays.asList(NEW, MEMBER), journal.applyPending(KEY, Arrays.asList(NEW)));
+        assertEquals("O\t2\tadd\ttest\tlist%40example.com\tmember%40example.org", readJournal().get(1));
+    }
+
+    @Test
+    public void permanentFailuresAreRecorded() throws Exception
+    {
+        this.connector.failure = new MailingListException("Unknown list");
+        WriteBehindJournal journal = getJournal();
+
+        journal.append(WriteBehindJournal.OPERATION_ADD, KEY, NEW);
+
+        // Given up right away
+        waitFor(() -> journal.getPendingCount() == 0);
+
+        assertEquals(1, journal.getDeadLetterCount());
+        List<String> deadLetters =
+            Files.readAllLines(new File(this.folder.getRoot(), "mailinglist/journal-failed.log").toPath());
+        assertEquals(1, deadLetters.size());
+        String deadLetter = deadLetters.get(0);
+        assertTrue(deadLetter, deadLetter.startsWith("O\t0\tadd\ttest\tlist%40example.com\tnew%40example.org\t"));
+        assertTrue(deadLetter, deadLetter.endsWith("\tUnknown+list"));
+    }
+
+    @Test
+    public void failingToOpenTheJournalOnlyFailsTheWriteBehindOperations() throws Exception
+    {
+        // The folder of the journal cannot be created
+        this.journalFile.getParentFile().createNewFile();
+
+        WriteBehindJournal journal = getJournal();
+
+        try {
+            journal.append(WriteBehindJournal.OPERATION_ADD, KEY, NEW);
+            fail("Should have failed");
+        } catch (MailingListException e) {
+            assertEquals("Failed to open the mailing list journal", e.getMessage());
+        }
+
+        assertEquals(0, journal.getPendingCount());
+    }
+}
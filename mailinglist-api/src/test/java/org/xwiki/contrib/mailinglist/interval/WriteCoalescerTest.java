@@ -0,0 +1,198 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link WriteCoalescer}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({WriteCoalescer.class, MailingListExecutor.class})
+public class WriteCoalescerTest
+{
+    private static final MailingListKey KEY = new MailingListKey("test", "list@example.com");
+
+    private static final long WINDOW = 50;
+
+    private static final String ADD = WriteCoalescer.OPERATION_ADD;
+
+    private static final String DELETE = WriteCoalescer.OPERATION_DELETE;
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private WriteCoalescer coalescer;
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> failing = new ArrayList<>();
+
+    private MailingListException failure;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource();
+
+        this.coalescer = this.componentManager.getInstance(WriteCoalescer.class);
+    }
+
+    private MailingListBulkResult execute(String operation, MailingListKey key, Collection<String> emails)
+        throws MailingListException
+    {
+        this.calls.add(operation + ' ' + emails);
+
+        if (this.failure != null) {
+            throw this.failure;
+        }
+
+        MailingListBulkResult result = new MailingListBulkResult();
+        for (String email : emails) {
+            if (this.failing.contains(email)) {
+                result.addFailure(email, new MailingListException("Failed to " + operation + ' ' + email));
+            } else {
+                result.addSuccess(email);
+            }
+        }
+
+        return result;
+    }
+
+    private CompletableFuture<Void> submit(String operation, String email)
+    {
+        return this.coalescer.submit(KEY, operation, email, WINDOW, this::execute);
+    }
+
+    private static void join(CompletableFuture<Void> future) throws Exception
+    {
+        future.get(10, TimeUnit.SECONDS);
+    }
+
+    private static MailingListException getFailure(CompletableFuture<Void> future) throws Exception
+    {
+        try {
+            join(future);
+            fail("Should have failed");
+        } catch (ExecutionException e) {
+            return (MailingListException) e.getCause();
+        }
+
+        return null;
+    }
+
+    @Test
+    public void oppositeOperationsCancelEachOther() throws Exception
+    {
+        CompletableFuture<Void> add = submit(ADD, "one@example.org");
+        CompletableFuture<Void> delete = submit(DELETE, " One@Example.org");
+
+        // Nothing to wait for
+        assertTrue(add.isDone());
+        assertTrue(delete.isDone());
+
+        join(submit(ADD, "two@example.org"));
+
+        assertEquals(Arrays.asList("add [two@example.org]"), this.calls);
+    }
+
+    @Test
+    public void duplicateOperationsAreCollapsed() throws Exception
+    {
+        CompletableFuture<Void> first = submit(ADD, "one@example.org");
+        CompletableFuture<Void> second = submit(ADD, "one@example.org");
+        CompletableFuture<Void> other = submit(ADD, "two@example.org");
+
+        join(first);
+        join(second);
+        join(other);
+
+        assertEquals(Arrays.asList("add [one@example.org, two@example.org]"), this.calls);
+    }
+
+    @Test
+    public void deletionsAreAppliedBeforeAdditions() throws Exception
+    {
+        CompletableFuture<Void> add = submit(ADD, "one@example.org");
+        CompletableFuture<Void> delete = submit(DELETE, "two@example.org");
+
+        join(add);
+        join(delete);
+
+        assertEquals(Arrays.asList("delete [two@example.org]", "add [one@example.org]"), this.calls);
+    }
+
+    @Test
+    public void failuresAreReportedForEachAddress() throws Exception
+    {
+        this.failing.add("two@example.org");
+
+        CompletableFuture<Void> one = submit(ADD, "one@example.org");
+        CompletableFuture<Void> two = submit(ADD, "two@example.org");
+
+        join(one);
+        assertEquals("Failed to add two@example.org", getFailure(two).getMessage());
+    }
+
+    @Test
+    public void globalFailuresAreReportedToAllOperations() throws Exception
+    {
+        this.failure = new MailingListException("Unavailable");
+
+        CompletableFuture<Void> one = submit(ADD, "one@example.org");
+        CompletableFuture<Void> two = submit(ADD, "two@example.org");
+
+        assertSame(this.failure, getFailure(one));
+        assertSame(this.failure, getFailure(two));
+    }
+
+    @Test
+    public void pendingOperationsAreAppliedOnDispose() throws Exception
+    {
+        CompletableFuture<Void> add = this.coalescer.submit(KEY, ADD, "one@example.org", TimeUnit.HOURS.toMillis(1),
+            this::execute);
+
+        this.coalescer.dispose();
+
+        assertTrue(add.isDone());
+        assertEquals(Arrays.asList("add [one@example.org]"), this.calls);
+    }
+}
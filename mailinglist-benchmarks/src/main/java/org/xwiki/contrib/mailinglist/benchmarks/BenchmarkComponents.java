@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.file.Files;
+
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.mailinglist.interval.ConnectorRoutingTable;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListManager;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListMetricsRegistry;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListTaskExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListMetrics;
+import org.xwiki.contrib.mailinglist.interval.MembershipCache;
+import org.xwiki.contrib.mailinglist.interval.MembershipIndex;
+import org.xwiki.contrib.mailinglist.interval.MembershipRefreshScheduler;
+import org.xwiki.contrib.mailinglist.interval.MembershipSnapshotStore;
+import org.xwiki.contrib.mailinglist.interval.ProfileConfigurationCache;
+import org.xwiki.contrib.mailinglist.interval.ReverseMembershipIndex;
+import org.xwiki.contrib.mailinglist.interval.WriteBehindJournal;
+import org.xwiki.contrib.mailinglist.interval.WriteCoalescer;
+import org.xwiki.contrib.mailinglist.ovh.internal.HttpClientOVHTransport;
+import org.xwiki.contrib.mailinglist.ovh.internal.OVHMailingListConnector;
+import org.xwiki.contrib.mailinglist.ovh.internal.OVHRateLimiter;
+import org.xwiki.contrib.mailinglist.ovh.internal.OVHRedirectMailingListConnector;
+import org.xwiki.contrib.mailinglist.ovh.internal.URLConnectionOVHTransport;
+import org.xwiki.environment.Environment;
+
+/**
+ * Create a component manager containing the mailing list components, without the script service and the listeners
+ * which require a full XWiki instance.
+ * 
+ * @version $Id$
+ */
+public final class BenchmarkComponents
+{
+    private static final Class<?>[] COMPONENTS = {DefaultMailingListManager.class, ProfileConfigurationCache.class,
+        ConnectorRoutingTable.class, MailingListExecutor.class, MembershipCache.class, MembershipIndex.class,
+        MembershipRefreshScheduler.class, ReverseMembershipIndex.class, MembershipSnapshotStore.class,
+        WriteBehindJournal.class, WriteCoalescer.class, MailingListMetrics.class, OVHMailingListConnector.class,
+        OVHRedirectMailingListConnector.class, OVHRateLimiter.class, HttpClientOVHTransport.class,
+        URLConnectionOVHTransport.class, MemoryMailingListConnector.class, DefaultMailingListTaskExecutor.class,
+        DefaultMailingListMetricsRegistry.class};
+
+    private BenchmarkComponents()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param configuration the configuration to use
+     * @return the component manager
+     * @throws Exception when failing to register the components
+     */
+    public static EmbeddableComponentManager create(ConfigurationSource configuration) throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+
+        register(componentManager, ConfigurationSource.class, configuration);
+        register(componentManager, Environment.class, createEnvironment());
+
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        for (Class<?> componentClass : COMPONENTS) {
+            for (ComponentDescriptor<?> descriptor : loader.getComponentsDescriptors(componentClass)) {
+                componentManager.registerComponent(descriptor);
+            }
+        }
+
+        return componentManager;
+    }
+
+    private static <T> void register(EmbeddableComponentManager componentManager, Type role, T instance)
+        throws Exception
+    {
+        DefaultComponentDescriptor<T> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(role);
+        descriptor.setRoleHint("default");
+
+        componentManager.registerComponent(descriptor, instance);
+    }
+
+    private static Environment createEnvironment() throws Exception
+    {
+        File directory = Files.createTempDirectory("mailinglist-benchmarks").toFile();
+
+        return new Environment()
+        {
+            @Override
+            public File getTemporaryDirectory()
+            {
+                return directory;
+            }
+
+            @Override
+            public File getPermanentDirectory()
+            {
+                return directory;
+            }
+
+            @Override
+            public URL getResource(String resourceName)
+            {
+                return null;
+            }
+
+            @Override
+            public InputStream getResourceAsStream(String resourceName)
+            {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListManager;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.interval.ProfileConfigurationCache;
+
+/**
+ * Measure the overhead of {@link MailingListManager} (configuration, routing, cache, metrics) using an in-memory
+ * connector and a configuration source containing many profiles and unrelated properties.
+ * 
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManagerDispatchBenchmark
+{
+    private static final String LIST = "announces@example.org";
+
+    private static final String EMAIL = "john.doe@example.com";
+
+    /**
+     * The number of profiles in the configuration (each with 8 properties, next to 10 unrelated properties per
+     * profile).
+     */
+    @Param({ "10", "1000", "10000" })
+    public int profileCount;
+
+    /**
+     * The time to live of the members cache in seconds (0 to disable it).
+     */
+    @Param({ "0", "60" })
+    public int membersCacheTTL;
+
+    private EmbeddableComponentManager componentManager;
+
+    private MailingListManager manager;
+
+    private ProfileConfigurationCache configurations;
+
+    private String[] profiles;
+
+    /**
+     * Rotate between the profiles.
+     * 
+     * @version $Id$
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        private int index;
+
+        String next(String[] profiles)
+        {
+            this.index = (this.index + 1) % profiles.length;
+
+            return profiles[this.index];
+        }
+    }
+
+    /**
+     * Create the configuration and the components.
+     * 
+     * @throws Exception when failing to create the components
+     */
+    @Setup
+    public void setup() throws Exception
+    {
+        MapConfigurationSource configuration = new MapConfigurationSource();
+        this.profiles = new String[this.profileCount];
+        for (int i = 0; i < this.profileCount; ++i) {
+            String profile = "profile" + i;
+            this.profiles[i] = profile;
+
+            String prefix = "mailinglist." + profile + '.';
+            configuration.set(prefix + MailingListProfileConfiguration.PROPERTY_CONNECTOR, "memory");
+            configuration.set(prefix + "appKey", "key" + i);
+            configuration.set(prefix + "appSecret", "secret" + i);
+            configuration.set(prefix + "consumerKey", "consumer" + i);
+            configuration.set(prefix + "endpoint", "https://eu.api.ovh.com/1.0");
+            configuration.set(prefix + "membersCacheTTL", String.valueOf(this.membersCacheTTL));
+            configuration.set(prefix + "concurrency", "8");
+            configuration.set(prefix + "bulkheadSize", "0");
+
+            for (int j = 0; j < 10; ++j) {
+                configuration.set("xwiki.property" + i + '.' + j, "value");
+            }
+        }
+
+        this.componentManager = BenchmarkComponents.create(configuration);
+        this.manager = this.componentManager.getInstance(MailingListManager.class);
+        this.configurations = this.componentManager.getInstance(ProfileConfigurationCache.class);
+
+        for (String profile : this.profiles) {
+            this.manager.add(profile, LIST, EMAIL);
+        }
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * Get the members of a list.
+     * 
+     * @param cursor the profile to use
+     * @return the members
+     * @throws MailingListException when failing to get the members
+     */
+    @Benchmark
+    public List<String> getMembers(Cursor cursor) throws MailingListException
+    {
+        return this.manager.getMembers(cursor.next(this.profiles), LIST);
+    }
+
+    /**
+     * Check if an address is a member of a list.
+     * 
+     * @param cursor the profile to use
+     * @return true if the address is a member
+     * @throws MailingListException when failing to get the members
+     */
+    @Benchmark
+    public boolean isMember(Cursor cursor) throws MailingListException
+    {
+        return this.manager.isMember(cursor.next(this.profiles), LIST, EMAIL);
+    }
+
+    /**
+     * Add an existing member to a list.
+     * 
+     * @param cursor the profile to use
+     * @throws MailingListException when failing to add the member
+     */
+    @Benchmark
+    public void add(Cursor cursor) throws MailingListException
+    {
+        this.manager.add(cursor.next(this.profiles), LIST, EMAIL);
+    }
+
+    /**
+     * Rebuild the configuration of all the profiles.
+     * 
+     * @return the configuration of a profile
+     */
+    @Benchmark
+    public MailingListProfileConfiguration reloadConfiguration()
+    {
+        this.configurations.invalidate();
+
+        return this.configurations.get(this.profiles[0]);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * Simple in-memory {@link ConfigurationSource} used to feed the benchmarked components.
+ * 
+ * @version $Id$
+ */
+public class MapConfigurationSource implements ConfigurationSource
+{
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+
+    /**
+     * @param key the property name
+     * @param value the property value
+     * @return this configuration source
+     */
+    public MapConfigurationSource set(String key, Object value)
+    {
+        this.properties.put(key, value);
+
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String key, T defaultValue)
+    {
+        Object value = this.properties.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        return defaultValue != null ? (T) convert(value, defaultValue.getClass()) : (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String key, Class<T> valueClass)
+    {
+        Object value = this.properties.get(key);
+
+        return value != null ? (T) convert(value, valueClass) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String key)
+    {
+        return (T) this.properties.get(key);
+    }
+
+    @Override
+    public List<String> getKeys()
+    {
+        return new ArrayList<>(this.properties.keySet());
+    }
+
+    @Override
+    public boolean containsKey(String key)
+    {
+        return this.properties.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return this.properties.isEmpty();
+    }
+
+    private Object convert(Object value, Class<?> valueClass)
+    {
+        if (valueClass.isInstance(value)) {
+            return value;
+        }
+
+        String stringValue = value.toString();
+        if (valueClass == String.class) {
+            return stringValue;
+        } else if (valueClass == Integer.class) {
+            return Integer.valueOf(stringValue);
+        } else if (valueClass == Long.class) {
+            return Long.valueOf(stringValue);
+        } else if (valueClass == Boolean.class) {
+            return Boolean.valueOf(stringValue);
+        }
+
+        throw new IllegalArgumentException("Unsupported type [" + valueClass + "]");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Connector storing the members in memory, used to measure the overhead of the manager itself.
+ * 
+ * @version $Id$
+ */
+@Component
+@Named("memory")
+@Singleton
+public class MemoryMailingListConnector implements MailingListConnector
+{
+    private final ConcurrentMap<String, Set<String>> lists = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+    {
+        this.lists.computeIfAbsent(mailingList, l -> ConcurrentHashMap.newKeySet()).add(email);
+    }
+
+    @Override
+    public void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+    {
+        this.lists.getOrDefault(mailingList, Collections.<String>emptySet()).remove(email);
+    }
+
+    @Override
+    public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
+    {
+        return new ArrayList<>(this.lists.getOrDefault(mailingList, Collections.<String>emptySet()));
+    }
+}
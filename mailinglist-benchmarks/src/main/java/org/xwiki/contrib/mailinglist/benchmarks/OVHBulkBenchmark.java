@@ -0,0 +1,192 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListManager;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.ovh.simulator.OVHSimulator;
+
+/**
+ * Measure the bulk and concurrent paths of the OVH connector against an in-process {@link OVHSimulator}.
+ * 
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OVHBulkBenchmark
+{
+    private static final String PROFILE = "ovh";
+
+    private static final String DOMAIN = "example.org";
+
+    private static final String NAME = "announces";
+
+    private static final String LIST = NAME + '@' + DOMAIN;
+
+    /**
+     * The number of addresses in each bulk operation.
+     */
+    @Param({ "100" })
+    public int bulkSize;
+
+    /**
+     * The maximum number of concurrent requests of a bulk operation.
+     */
+    @Param({ "1", "8", "32" })
+    public int concurrency;
+
+    /**
+     * The simulated network latency in milliseconds.
+     */
+    @Param({ "0", "5" })
+    public int latency;
+
+    /**
+     * The HTTP transport.
+     */
+    @Param({ "default", "urlconnection" })
+    public String transport;
+
+    private OVHSimulator server;
+
+    private EmbeddableComponentManager componentManager;
+
+    private MailingListManager manager;
+
+    private List<String> emails;
+
+    /**
+     * Start the server and create the components.
+     * 
+     * @throws Exception when failing to start the server or create the components
+     */
+    @Setup
+    public void setup() throws Exception
+    {
+        this.emails = new ArrayList<>(this.bulkSize);
+        for (int i = 0; i < this.bulkSize; ++i) {
+            this.emails.add("member" + i + "@example.com");
+        }
+
+        List<String> members = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; ++i) {
+            members.add("member" + i + "@example.com");
+        }
+
+        this.server = new OVHSimulator().addApplication("key", "secret", "consumer");
+        this.server.setLatency(this.latency, this.latency);
+        this.server.getStore().addSubscribers(DOMAIN, NAME, members);
+
+        String prefix = "mailinglist." + PROFILE + '.';
+        MapConfigurationSource configuration = new MapConfigurationSource()
+            .set(prefix + MailingListProfileConfiguration.PROPERTY_CONNECTOR, "ovh")
+            .set(prefix + "endpoint", this.server.getEndpoint()).set(prefix + "appKey", "key")
+            .set(prefix + "appSecret", "secret").set(prefix + "consumerKey", "consumer")
+            .set(prefix + "transport", this.transport).set(prefix + "concurrency", String.valueOf(this.concurrency))
+            .set(prefix + "maxConnections", String.valueOf(Math.max(32, this.concurrency)))
+            // Measure the connector, not the protections
+            .set(prefix + "rateLimit", "0").set(prefix + "bulkheadSize", "0").set(prefix + "membersCacheTTL", "0");
+
+        this.componentManager = BenchmarkComponents.create(configuration);
+        this.manager = this.componentManager.getInstance(MailingListManager.class);
+    }
+
+    /**
+     * Put back the members removed by {@link #deleteAll()} so that each invocation removes existing members (the
+     * simulator answers 404 when removing an unknown member).
+     */
+    @Setup(Level.Invocation)
+    public void restoreMembers()
+    {
+        this.server.getStore().addSubscribers(DOMAIN, NAME, this.emails);
+    }
+
+    /**
+     * Stop the server and release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+        this.server.close();
+    }
+
+    /**
+     * Add many members at once.
+     * 
+     * @return the result
+     * @throws MailingListException when failing to add the members
+     */
+    @Benchmark
+    public MailingListBulkResult addAll() throws MailingListException
+    {
+        return this.manager.addAll(PROFILE, LIST, this.emails);
+    }
+
+    /**
+     * Remove many members at once.
+     * 
+     * @return the result
+     * @throws MailingListException when failing to remove the members
+     */
+    @Benchmark
+    public MailingListBulkResult deleteAll() throws MailingListException
+    {
+        return this.manager.deleteAll(PROFILE, LIST, this.emails);
+    }
+
+    /**
+     * Get the 1000 members of a list from several threads at the same time.
+     * 
+     * @return the members
+     * @throws MailingListException when failing to get the members
+     */
+    @Benchmark
+    @Threads(8)
+    public List<String> concurrentGetMembers() throws MailingListException
+    {
+        return this.manager.getMembers(PROFILE, LIST);
+    }
+}
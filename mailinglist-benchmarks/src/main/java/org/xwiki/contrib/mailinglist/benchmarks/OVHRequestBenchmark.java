@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.mailinglist.ovh.internal.OVHPathTemplate;
+import org.xwiki.contrib.mailinglist.ovh.internal.OVHSigner;
+
+/**
+ * Compare the request preparation (path resolution, mailing list address split, signature) of the OVH connectors
+ * with the implementation it replaced. Run with {@code -prof gc} to get the allocation rate per operation.
+ * 
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OVHRequestBenchmark
+{
+    private static final String PATH = "/email/domain/{0}/mailingList/{1}/subscriber/{2}";
+
+    private static final Pattern MAIL_REGEX = Pattern.compile("(.*)@(.*)");
+
+    private final OVHPathTemplate template = new OVHPathTemplate(PATH);
+
+    private final String mailingList = "announces@example.org";
+
+    private final String email = "john.doe@example.com";
+
+    private final String endpoint = "https://eu.api.ovh.com/1.0";
+
+    private final byte[] body = "{\"email\":\"john.doe@example.com\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final long timestamp = 1500000000L;
+
+    /**
+     * The implementation used before precompiled templates and the reusable signer.
+     */
+    @Benchmark
+    public String legacy() throws NoSuchAlgorithmException, UnsupportedEncodingException
+    {
+        Matcher matcher = MAIL_REGEX.matcher(this.mailingList);
+        matcher.find();
+
+        String path = MessageFormat.format(PATH, matcher.group(2), matcher.group(1), this.email);
+        String url = new StringBuilder(this.endpoint).append(path).toString();
+
+        String bodyString = new String(this.body, StandardCharsets.ISO_8859_1);
+        String toSign = new StringBuilder("secret").append("+").append("consumer").append("+").append("POST")
+            .append("+").append(url).append("+").append(bodyString).append("+").append(this.timestamp).toString();
+
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        md.update(toSign.getBytes("iso-8859-1"), 0, toSign.length());
+        byte[] sha1hash = md.digest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sha1hash.length; i++) {
+            sb.append(Integer.toString((sha1hash[i] & 0xff) + 0x100, 16).substring(1));
+        }
+
+        return new StringBuilder("$1$").append(sb.toString()).toString();
+    }
+
+    /**
+     * The current implementation.
+     */
+    @Benchmark
+    public String current()
+    {
+        int index = this.mailingList.lastIndexOf('@');
+
+        String path = this.template.format(this.mailingList.substring(index + 1),
+            this.mailingList.substring(0, index), this.email);
+        String url = new StringBuilder(this.endpoint.length() + path.length()).append(this.endpoint).append(path)
+            .toString();
+
+        return OVHSigner.sign("secret", "consumer", "POST", url, this.body, this.timestamp);
+    }
+}
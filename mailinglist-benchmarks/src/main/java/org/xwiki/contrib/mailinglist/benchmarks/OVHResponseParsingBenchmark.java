@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Compare the parsing of the OVH subscribers list response with the implementation it replaced (read the whole body
+ * line by line in a String, then parse it with a new {@link ObjectMapper}).
+ * 
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OVHResponseParsingBenchmark
+{
+    // Same reader as the OVH connectors
+    private static final ObjectReader STRING_LIST_READER =
+        new ObjectMapper().readerFor(new TypeReference<List<String>>()
+        {
+        });
+
+    /**
+     * The number of members in the response.
+     */
+    @Param({ "100", "1000", "10000", "100000" })
+    public int memberCount;
+
+    private byte[] response;
+
+    /**
+     * Generate the response.
+     */
+    @Setup
+    public void setup()
+    {
+        StringBuilder json = new StringBuilder(this.memberCount * 32).append('[');
+        for (int i = 0; i < this.memberCount; ++i) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"member").append(i).append("@example.com\"");
+        }
+
+        this.response = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The implementation used before streaming the response to a shared reader.
+     * 
+     * @return the parsed members
+     * @throws IOException when failing to parse the response
+     */
+    @Benchmark
+    public Object legacy() throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.response)));
+
+        String inputLine;
+        StringBuilder builder = new StringBuilder();
+        while ((inputLine = in.readLine()) != null) {
+            builder.append(inputLine);
+        }
+        in.close();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        return objectMapper.readValue(builder.toString(), Object.class);
+    }
+
+    /**
+     * The current implementation.
+     * 
+     * @return the parsed members
+     * @throws IOException when failing to parse the response
+     */
+    @Benchmark
+    public List<String> current() throws IOException
+    {
+        return STRING_LIST_READER.readValue(new ByteArrayInputStream(this.response));
+    }
+}
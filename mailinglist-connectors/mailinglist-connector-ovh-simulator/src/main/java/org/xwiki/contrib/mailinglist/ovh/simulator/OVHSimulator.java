@@ -0,0 +1,551 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.contrib.mailinglist.ovh.simulator.OVHSimulatorStore.Redirection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server simulating the parts of the OVH API used by the mailing list connectors, so that they can be
+ * tested and load tested without network access.
+ * <p>
+ * Supported endpoints:
+ * <ul>
+ * <li>{@code GET/POST /email/domain/{domain}/mailingList/{name}/subscriber}</li>
+ * <li>{@code GET/DELETE /email/domain/{domain}/mailingList/{name}/subscriber/{email}}</li>
+ * <li>{@code GET/POST /email/domain/{domain}/redirection} (with optional {@code from} and {@code to} filters)</li>
+ * <li>{@code GET/DELETE /email/domain/{domain}/redirection/{id}}</li>
+ * </ul>
+ * The {@code X-Ovh-Signature} header is validated for the applications registered with
+ * {@link #addApplication(String, String, String)} (no validation is done when no application is registered). The
+ * state is kept in memory in a {@link OVHSimulatorStore}.
+ * <p>
+ * Latency, rate limiting (429 responses with a {@code Retry-After} header) and errors can be injected and changed at
+ * any time.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class OVHSimulator implements Closeable
+{
+    private static final String PREFIX = "email";
+
+    private static final String GET = "GET";
+
+    private static final String POST = "POST";
+
+    private static final String DELETE = "DELETE";
+
+    private static final String MESSAGE = "message";
+
+    private static final String FROM = "from";
+
+    private static final String TO = "to";
+
+    private static final int STATUS_OK = 200;
+
+    private static final int STATUS_FORBIDDEN = 403;
+
+    private static final int STATUS_NOTFOUND = 404;
+
+    private static final int STATUS_NOTALLOWED = 405;
+
+    private static final int STATUS_TOOMANYREQUESTS = 429;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final class Application
+    {
+        private final String secret;
+
+        private final String consumerKey;
+
+        Application(String secret, String consumerKey)
+        {
+            this.secret = secret;
+            this.consumerKey = consumerKey;
+        }
+    }
+
+    private static final class Response
+    {
+        private final int status;
+
+        private final Object body;
+
+        Response(int status, Object body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final OVHSimulatorStore store = new OVHSimulatorStore();
+
+    private final ConcurrentMap<String, Application> applications = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "OVH simulator");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final HttpServer server;
+
+    private volatile long minLatency;
+
+    private volatile long maxLatency;
+
+    private volatile int rateLimit;
+
+    private volatile double errorRate;
+
+    private volatile int errorStatus = 500;
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile int failureStatus = 500;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final ConcurrentMap<Integer, AtomicLong> responses = new ConcurrentHashMap<>();
+
+    // Protected by this
+    private long rateWindow;
+
+    private int rateWindowCount;
+
+    /**
+     * Start a simulator listening on a random port of the loopback interface.
+     * 
+     * @throws IOException when failing to start the server
+     */
+    public OVHSimulator() throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @return the endpoint to put in the profile configuration
+     */
+    public String getEndpoint()
+    {
+        return "http://" + this.server.getAddress().getHostString() + ':' + this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return the state of the simulated account
+     */
+    public OVHSimulatorStore getStore()
+    {
+        return this.store;
+    }
+
+    /**
+     * Register an application whose requests signature should be validated.
+     * 
+     * @param appKey the application key
+     * @param appSecret the application secret
+     * @param consumerKey the consumer key
+     * @return this simulator
+     */
+    public OVHSimulator addApplication(String appKey, String appSecret, String consumerKey)
+    {
+        this.applications.put(appKey, new Application(appSecret, consumerKey));
+
+        return this;
+    }
+
+    /**
+     * @param min the minimum number of milliseconds to wait before answering
+     * @param max the maximum number of milliseconds to wait before answering
+     * @return this simulator
+     */
+    public OVHSimulator setLatency(long min, long max)
+    {
+        this.minLatency = min;
+        this.maxLatency = Math.max(min, max);
+
+        return this;
+    }
+
+    /**
+     * @param requestsPerSecond the number of requests accepted per second before answering with 429 (0 to disable)
+     * @return this simulator
+     */
+    public OVHSimulator setRateLimit(int requestsPerSecond)
+    {
+        this.rateLimit = requestsPerSecond;
+
+        return this;
+    }
+
+    /**
+     * @param rate the ratio of requests failing randomly (between 0 and 1)
+     * @param status the HTTP status of the failed requests
+     * @return this simulator
+     */
+    public OVHSimulator setErrorRate(double rate, int status)
+    {
+        this.errorRate = rate;
+        this.errorStatus = status;
+
+        return this;
+    }
+
+    /**
+     * @param count the number of next requests to fail
+     * @param status the HTTP status of the failed requests
+     * @return this simulator
+     */
+    public OVHSimulator failNext(int count, int status)
+    {
+        this.failureStatus = status;
+        this.failures.set(count);
+
+        return this;
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequestCount()
+    {
+        return this.requests.get();
+    }
+
+    /**
+     * @param status an HTTP status
+     * @return the number of responses sent with the passed status
+     */
+    public long getResponseCount(int status)
+    {
+        AtomicLong counter = this.responses.get(status);
+
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Reset the request and response counters.
+     */
+    public void resetStatistics()
+    {
+        this.requests.set(0);
+        this.responses.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            this.requests.incrementAndGet();
+
+            byte[] body = readBody(exchange.getRequestBody());
+
+            long min = this.minLatency;
+            long max = this.maxLatency;
+            if (max > 0) {
+                TimeUnit.MILLISECONDS.sleep(min < max ? ThreadLocalRandom.current().nextLong(min, max + 1) : min);
+            }
+
+            Response response = process(exchange, body);
+
+            send(exchange, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            send(exchange, error(500, e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response process(HttpExchange exchange, byte[] body) throws IOException, NoSuchAlgorithmException
+    {
+        Response failure = checkSignature(exchange, body);
+        if (failure != null) {
+            return failure;
+        }
+
+        if (isRateLimited()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+
+            return error(STATUS_TOOMANYREQUESTS, "Too many requests");
+        }
+
+        if (this.failures.getAndUpdate(count -> count > 0 ? count - 1 : 0) > 0) {
+            return error(this.failureStatus, "Injected failure");
+        }
+        if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+            return error(this.errorStatus, "Injected failure");
+        }
+
+        return route(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+            parseQuery(exchange.getRequestURI().getRawQuery()), body);
+    }
+
+    private Response route(String method, String path, Map<String, String> query, byte[] body) throws IOException
+    {
+        // /email/domain/{domain}/...
+        String[] segments = path.split("/");
+        if (segments.length < 5 || !segments[1].equals(PREFIX) || !segments[2].equals("domain")) {
+            return error(STATUS_NOTFOUND, "Unknown path " + path);
+        }
+
+        String domain = decode(segments[3]);
+
+        if (segments[4].equals("mailingList") && segments.length >= 7 && segments[6].equals("subscriber")) {
+            String name = decode(segments[5]);
+
+            if (segments.length == 7) {
+                return subscribers(method, domain, name, body);
+            } else if (segments.length == 8) {
+                return subscriber(method, domain, name, decode(segments[7]));
+            }
+        } else if (segments[4].equals("redirection")) {
+            if (segments.length == 5) {
+                return redirections(method, domain, query, body);
+            } else if (segments.length == 6) {
+                return redirection(method, domain, decode(segments[5]));
+            }
+        }
+
+        return error(STATUS_NOTFOUND, "Unknown path " + path);
+    }
+
+    private Response subscribers(String method, String domain, String name, byte[] body) throws IOException
+    {
+        if (method.equals(GET)) {
+            return new Response(STATUS_OK, this.store.getSubscribers(domain, name));
+        } else if (method.equals(POST)) {
+            Map<?, ?> parameters = JSON.readValue(body, Map.class);
+            this.store.addSubscriber(domain, name, String.valueOf(parameters.get("email")));
+
+            return task("mailinglist/subscriber/add");
+        }
+
+        return error(STATUS_NOTALLOWED, method);
+    }
+
+    private Response subscriber(String method, String domain, String name, String email)
+    {
+        if (method.equals(GET)) {
+            if (this.store.getSubscribers(domain, name).contains(email)) {
+                return new Response(STATUS_OK, Collections.singletonMap("email", email));
+            }
+        } else if (method.equals(DELETE)) {
+            if (this.store.removeSubscriber(domain, name, email)) {
+                return task("mailinglist/subscriber/delete");
+            }
+        } else {
+            return error(STATUS_NOTALLOWED, method);
+        }
+
+        return error(STATUS_NOTFOUND, "The requested object (email = " + email + ") does not exist");
+    }
+
+    private Response redirections(String method, String domain, Map<String, String> query, byte[] body)
+        throws IOException
+    {
+        if (method.equals(GET)) {
+            return new Response(STATUS_OK, this.store.findRedirections(domain, query.get(FROM), query.get(TO)));
+        } else if (method.equals(POST)) {
+            Map<?, ?> parameters = JSON.readValue(body, Map.class);
+            this.store.addRedirection(domain, String.valueOf(parameters.get(FROM)), String.valueOf(parameters.get(TO)));
+
+            return task("redirection/create");
+        }
+
+        return error(STATUS_NOTALLOWED, method);
+    }
+
+    private Response redirection(String method, String domain, String id)
+    {
+        if (method.equals(GET)) {
+            Redirection redirection = this.store.getRedirection(domain, id);
+            if (redirection != null) {
+                Map<String, String> result = new LinkedHashMap<>();
+                result.put("id", redirection.getId());
+                result.put(FROM, redirection.getFrom());
+                result.put(TO, redirection.getTo());
+
+                return new Response(STATUS_OK, result);
+            }
+        } else if (method.equals(DELETE)) {
+            if (this.store.removeRedirection(domain, id)) {
+                return task("redirection/delete");
+            }
+        } else {
+            return error(STATUS_NOTALLOWED, method);
+        }
+
+        return error(STATUS_NOTFOUND, "The requested object (id = " + id + ") does not exist");
+    }
+
+    private Response checkSignature(HttpExchange exchange, byte[] body)
+        throws UnsupportedEncodingException, NoSuchAlgorithmException
+    {
+        if (this.applications.isEmpty()) {
+            return null;
+        }
+
+        String appKey = exchange.getRequestHeaders().getFirst("X-Ovh-Application");
+        Application application = appKey != null ? this.applications.get(appKey) : null;
+        if (application == null) {
+            return error(STATUS_FORBIDDEN, "Invalid application key");
+        }
+
+        String consumerKey = exchange.getRequestHeaders().getFirst("X-Ovh-Consumer");
+        if (!application.consumerKey.equals(consumerKey)) {
+            return error(STATUS_FORBIDDEN, "Invalid credential");
+        }
+
+        String timestamp = exchange.getRequestHeaders().getFirst("X-Ovh-Timestamp");
+        String url = getEndpoint() + exchange.getRequestURI().toString();
+        String toSign = application.secret + '+' + consumerKey + '+' + exchange.getRequestMethod() + '+' + url + '+'
+            + new String(body, StandardCharsets.ISO_8859_1) + '+' + timestamp;
+
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(toSign.getBytes(StandardCharsets.ISO_8859_1));
+        StringBuilder signature = new StringBuilder("$1$");
+        for (byte b : hash) {
+            signature.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        if (!signature.toString().equals(exchange.getRequestHeaders().getFirst("X-Ovh-Signature"))) {
+            return error(STATUS_FORBIDDEN, "Invalid signature");
+        }
+
+        return null;
+    }
+
+    private synchronized boolean isRateLimited()
+    {
+        if (this.rateLimit <= 0) {
+            return false;
+        }
+
+        long window = System.nanoTime() / TimeUnit.SECONDS.toNanos(1);
+        if (window != this.rateWindow) {
+            this.rateWindow = window;
+            this.rateWindowCount = 0;
+        }
+
+        return ++this.rateWindowCount > this.rateLimit;
+    }
+
+    private Response task(String function)
+    {
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("id", this.store.nextTaskId());
+        task.put("action", function);
+        task.put("status", "todo");
+
+        return new Response(STATUS_OK, task);
+    }
+
+    private Response error(int status, String message)
+    {
+        return new Response(status, Collections.singletonMap(MESSAGE, message));
+    }
+
+    private void send(HttpExchange exchange, Response response) throws IOException
+    {
+        this.responses.computeIfAbsent(response.status, s -> new AtomicLong()).incrementAndGet();
+
+        byte[] bytes = JSON.writeValueAsBytes(response.body);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private byte[] readBody(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private Map<String, String> parseQuery(String query) throws UnsupportedEncodingException
+    {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            int index = parameter.indexOf('=');
+            if (index > 0) {
+                parameters.put(decode(parameter.substring(0, index)), decode(parameter.substring(index + 1)));
+            }
+        }
+
+        return parameters;
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException
+    {
+        return URLDecoder.decode(value, "UTF-8");
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.simulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory state of the simulated OVH account: mailing list subscribers and redirections. All methods are thread
+ * safe.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class OVHSimulatorStore
+{
+    /**
+     * A redirection.
+     * 
+     * @version $Id$
+     */
+    public static final class Redirection
+    {
+        private final String id;
+
+        private final String from;
+
+        private final String to;
+
+        Redirection(String id, String from, String to)
+        {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return the identifier of the redirection
+         */
+        public String getId()
+        {
+            return this.id;
+        }
+
+        /**
+         * @return the source address
+         */
+        public String getFrom()
+        {
+            return this.from;
+        }
+
+        /**
+         * @return the target address
+         */
+        public String getTo()
+        {
+            return this.to;
+        }
+    }
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // domain/name -> subscribers
+    private final Map<String, Set<String>> subscribers = new HashMap<>();
+
+    // domain -> id -> redirection
+    private final Map<String, Map<String, Redirection>> redirections = new HashMap<>();
+
+    /**
+     * @param domain the domain of the mailing list
+     * @param name the name of the mailing list
+     * @return the subscribers of the mailing list
+     */
+    public synchronized List<String> getSubscribers(String domain, String name)
+    {
+        Set<String> listSubscribers = this.subscribers.get(getListKey(domain, name));
+
+        return listSubscribers != null ? new ArrayList<>(listSubscribers) : new ArrayList<String>();
+    }
+
+    /**
+     * @param domain the domain of the mailing list
+     * @param name the name of the mailing list
+     * @param email the address
+     * @return true if the address was added, false if it was already subscribed
+     */
+    public synchronized boolean addSubscriber(String domain, String name, String email)
+    {
+        return this.subscribers.computeIfAbsent(getListKey(domain, name), k -> new LinkedHashSet<>()).add(email);
+    }
+
+    /**
+     * @param domain the domain of the mailing list
+     * @param name the name of the mailing list
+     * @param emails the addresses
+     */
+    public synchronized void addSubscribers(String domain, String name, Collection<String> emails)
+    {
+        this.subscribers.computeIfAbsent(getListKey(domain, name), k -> new LinkedHashSet<>()).addAll(emails);
+    }
+
+    /**
+     * @param domain the domain of the mailing list
+     * @param name the name of the mailing list
+     * @param email the address
+     * @return true if the address was removed, false if it was not subscribed
+     */
+    public synchronized boolean removeSubscriber(String domain, String name, String email)
+    {
+        Set<String> listSubscribers = this.subscribers.get(getListKey(domain, name));
+
+        return listSubscribers != null && listSubscribers.remove(email);
+    }
+
+    /**
+     * @param domain the domain
+     * @param from the source address to filter on, or null
+     * @param to the target address to filter on, or null
+     * @return the identifiers of the matching redirections
+     */
+    public synchronized List<String> findRedirections(String domain, String from, String to)
+    {
+        List<String> ids = new ArrayList<>();
+
+        Map<String, Redirection> domainRedirections = this.redirections.get(normalize(domain));
+        if (domainRedirections != null) {
+            for (Redirection redirection : domainRedirections.values()) {
+                if ((from == null || from.equalsIgnoreCase(redirection.from))
+                    && (to == null || to.equalsIgnoreCase(redirection.to))) {
+                    ids.add(redirection.id);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * @param domain the domain
+     * @param id the identifier of the redirection
+     * @return the redirection or null if it does not exist
+     */
+    public synchronized Redirection getRedirection(String domain, String id)
+    {
+        Map<String, Redirection> domainRedirections = this.redirections.get(normalize(domain));
+
+        return domainRedirections != null ? domainRedirections.get(id) : null;
+    }
+
+    /**
+     * @param domain the domain
+     * @param from the source address
+     * @param to the target address
+     * @return the new redirection
+     */
+    public synchronized Redirection addRedirection(String domain, String from, String to)
+    {
+        Redirection redirection = new Redirection(String.valueOf(this.nextId.getAndIncrement()), from, to);
+        this.redirections.computeIfAbsent(normalize(domain), k -> new LinkedHashMap<>()).put(redirection.id,
+            redirection);
+
+        return redirection;
+    }
+
+    /**
+     * @param domain the domain
+     * @param id the identifier of the redirection
+     * @return true if the redirection was removed, false if it did not exist
+     */
+    public synchronized boolean removeRedirection(String domain, String id)
+    {
+        Map<String, Redirection> domainRedirections = this.redirections.get(normalize(domain));
+
+        return domainRedirections != null && domainRedirections.remove(id) != null;
+    }
+
+    /**
+     * @return a new task identifier
+     */
+    public long nextTaskId()
+    {
+        return this.nextId.getAndIncrement();
+    }
+
+    /**
+     * Remove everything.
+     */
+    public synchronized void clear()
+    {
+        this.subscribers.clear();
+        this.redirections.clear();
+    }
+
+    private String getListKey(String domain, String name)
+    {
+        return normalize(domain) + '/' + normalize(name);
+    }
+
+    private String normalize(String value)
+    {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -19,27 +19,47 @@
  */
 package org.xwiki.contrib.mailinglist.ovh.internal;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
-import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
-import java.text.MessageFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import javax.inject.Inject;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.mailinglist.MailingListBulkResult;
 import org.xwiki.contrib.mailinglist.MailingListConnector;
 import org.xwiki.contrib.mailinglist.MailingListException;
-
+import org.xwiki.contrib.mailinglist.MailingListMetricsRegistry;
+import org.xwiki.contrib.mailinglist.MailingListOperationMetrics;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTaskExecutor;
+import org.xwiki.contrib.mailinglist.MailingListThrottledException;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Base class for all OVH API based connectors.
@@ -55,11 +75,83 @@ public abstract class AbstractOVHMailingListConnector implements MailingListConn
 
     public static final String METHOD_DELETE = "delete";
 
-    private static final Pattern MAIL_REGEX = Pattern.compile("(.*)@(.*)");
+    /**
+     * The hint of the {@link OVHTransport} to use.
+     */
+    public static final String PROPERTY_TRANSPORT = "transport";
+
+    /**
+     * The maximum number of times a failed request is retried.
+     */
+    public static final String PROPERTY_MAXRETRIES = "maxRetries";
+
+    /**
+     * The default value of {@link #PROPERTY_MAXRETRIES}.
+     */
+    public static final int DEFAULT_MAXRETRIES = 3;
+
+    /**
+     * The base delay in milliseconds before retrying a failed request, doubled on each attempt.
+     */
+    public static final String PROPERTY_RETRYDELAY = "retryDelay";
+
+    /**
+     * The default value of {@link #PROPERTY_RETRYDELAY}.
+     */
+    public static final long DEFAULT_RETRYDELAY = 500;
+
+    private static final long MAX_RETRYDELAY = 30000;
+
+    private static final int STATUS_TOOMANYREQUESTS = 429;
+
+    private static final int STATUS_SERVERERROR = 500;
+
+    private static final String OPERATION_RATELIMIT = "ovh.rateLimit";
+
+    private static final String OPERATION_SIGN = "ovh.sign";
+
+    private static final String OPERATION_HTTP = "ovh.http";
+
+    private static final String OPERATION_PARSE = "ovh.parse";
+
+    /**
+     * Shared (thread safe) JSON mapper, use it to create readers.
+     */
+    protected static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    /**
+     * Parse a JSON array of strings.
+     */
+    protected static final ObjectReader STRING_LIST_READER = JSON_MAPPER.readerFor(new TypeReference<List<String>>()
+    {
+    });
+
+    private static final ObjectWriter JSON_WRITER = JSON_MAPPER.writer();
+
+    @FunctionalInterface
+    private interface MemberOperation
+    {
+        void execute(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+            throws MailingListException;
+    }
 
     protected final Map<String, String> methods = new HashMap<>();
 
-    protected final Map<String, String> paths = new HashMap<>();
+    protected final Map<String, OVHPathTemplate> paths = new HashMap<>();
+
+    @Inject
+    protected MailingListTaskExecutor executor;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private OVHRateLimiter rateLimiter;
+
+    @Inject
+    private MailingListMetricsRegistry metrics;
+
+    private final ConcurrentMap<String, OVHTransport> transports = new ConcurrentHashMap<>();
 
     public AbstractOVHMailingListConnector(String getaddPath, String deletePath)
     {
@@ -67,43 +159,146 @@ public abstract class AbstractOVHMailingListConnector implements MailingListConn
         this.methods.put(METHOD_ADD, "POST");
         this.methods.put(METHOD_DELETE, "DELETE");
 
-        this.paths.put(METHOD_GET, getaddPath);
-        this.paths.put(METHOD_ADD, getaddPath);
-        this.paths.put(METHOD_DELETE, deletePath);
+        OVHPathTemplate getaddTemplate = new OVHPathTemplate(getaddPath);
+        this.paths.put(METHOD_GET, getaddTemplate);
+        this.paths.put(METHOD_ADD, getaddTemplate);
+        this.paths.put(METHOD_DELETE, new OVHPathTemplate(deletePath));
     }
 
     @Override
-    public void delete(Map<String, String> profileConfiguration, String mailingList, String email)
+    public void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
         throws MailingListException
     {
         try {
-            exec(profileConfiguration, mailingList, email, METHOD_DELETE, null);
+            exec(profileConfiguration, mailingList, email, METHOD_DELETE, null, null);
         } catch (Exception e) {
-            throw new MailingListException("Failed to delete member", e);
+            throw toMailingListException("Failed to delete member", e);
         }
     }
 
     @Override
-    public List<String> getMembers(Map<String, String> profileConfiguration, String mailingList)
+    public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
         throws MailingListException
     {
         return getMembers(profileConfiguration, mailingList, null);
     }
 
-    public List<String> getMembers(Map<String, String> profileConfiguration, String mailingList,
+    @Override
+    public MailingListBulkResult addAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        return executeAll(profileConfiguration, mailingList, emails, this::add);
+    }
+
+    @Override
+    public MailingListBulkResult deleteAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails)
+    {
+        return executeAll(profileConfiguration, mailingList, emails, this::delete);
+    }
+
+    private MailingListBulkResult executeAll(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Collection<String> emails, MemberOperation operation)
+    {
+        // OVH does not provide any batch API so the best we can do is to send the requests concurrently
+        List<String> emailList = new ArrayList<>(emails);
+        MailingListException[] failures = new MailingListException[emailList.size()];
+        boolean[] processed = new boolean[emailList.size()];
+
+        MailingListBulkResult result = new MailingListBulkResult();
+
+        try {
+            this.executor.forEach(emailList, profileConfiguration.getInt(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY),
+                (index, email) -> {
+                    try {
+                        operation.execute(profileConfiguration, mailingList, email);
+                    } catch (MailingListException e) {
+                        failures[index] = e;
+                    } catch (Throwable e) {
+                        // Never report an address as added or removed when the operation did not complete
+                        failures[index] = new MailingListException("Unexpected failure", e);
+                    } finally {
+                        processed[index] = true;
+                    }
+                });
+        } catch (MailingListException e) {
+            // Report the addresses which were not processed as failed (forEach only returns once no task is running)
+            for (int i = 0; i < failures.length; ++i) {
+                if (!processed[i]) {
+                    failures[i] = e;
+                }
+            }
+        }
+
+        for (int i = 0; i < failures.length; ++i) {
+            if (failures[i] != null) {
+                result.addFailure(emailList.get(i), failures[i]);
+            } else {
+                result.addSuccess(emailList.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList,
         Map<String, Object> body) throws MailingListException
     {
         try {
-            return exec(profileConfiguration, mailingList, null, METHOD_GET, body);
+            return exec(profileConfiguration, mailingList, null, METHOD_GET, body, STRING_LIST_READER);
         } catch (Exception e) {
-            throw new MailingListException("Failed to get members", e);
+            throw toMailingListException("Failed to get members", e);
+        }
+    }
+
+    /**
+     * Wrap the failure of a request, telling apart the failures which can be retried later (network errors, server
+     * errors and throttling) from the others (client errors, invalid responses).
+     * 
+     * @param message the detail message
+     * @param e the failure
+     * @return the exception to throw
+     */
+    protected static MailingListException toMailingListException(String message, Exception e)
+    {
+        if (e instanceof OVHResponseException) {
+            int statusCode = ((OVHResponseException) e).getStatusCode();
+            if (statusCode == STATUS_TOOMANYREQUESTS) {
+                return new MailingListThrottledException(message, e);
+            } else if (statusCode >= STATUS_SERVERERROR) {
+                return new MailingListTransientException(message, e);
+            }
+        } else if (e instanceof IOException && !(e instanceof JsonProcessingException)) {
+            return new MailingListTransientException(message, e);
         }
+
+        return new MailingListException(message, e);
     }
 
-    protected String getPath(Map<String, String> profileConfiguration, String method, String domain, String name,
-        String email) throws UnsupportedEncodingException, NoSuchAlgorithmException, IOException, MailingListException
+    protected String getPath(MailingListProfileConfiguration profileConfiguration, String method, String domain,
+        String name, String email)
+        throws UnsupportedEncodingException, NoSuchAlgorithmException, IOException, MailingListException
     {
-        return MessageFormat.format(this.paths.get(method), encode(domain), encode(name), encode(email));
+        return this.paths.get(method).format(encode(domain), encode(name), encode(email));
+    }
+
+    protected OVHTransport getTransport(MailingListProfileConfiguration profileConfiguration)
+        throws MailingListException
+    {
+        String hint = profileConfiguration.get(PROPERTY_TRANSPORT, "default");
+
+        OVHTransport transport = this.transports.get(hint);
+        if (transport == null) {
+            try {
+                transport = this.componentManager.getInstance(OVHTransport.class, hint);
+            } catch (ComponentLookupException e) {
+                throw new MailingListException("Failed to get OVH transport for hint " + hint, e);
+            }
+
+            this.transports.put(hint, transport);
+        }
+
+        return transport;
     }
 
     protected String encode(String str) throws UnsupportedEncodingException
@@ -111,18 +306,40 @@ public abstract class AbstractOVHMailingListConnector implements MailingListConn
         return str != null ? URLEncoder.encode(str, "UTF8") : null;
     }
 
-    protected <T> T exec(Map<String, String> profileConfiguration, String mailingList, String email, String method,
-        Map<String, Object> body) throws NoSuchAlgorithmException, IOException, MailingListException
+    protected <T> T exec(MailingListProfileConfiguration profileConfiguration, String mailingList, String email,
+        String method, Map<String, Object> body, ObjectReader resultReader)
+        throws NoSuchAlgorithmException, IOException, MailingListException
+    {
+        return execStreaming(profileConfiguration, mailingList, email, method, body,
+            resultReader != null ? resultReader::readValue : null);
+    }
+
+    /**
+     * Same as {@link #exec(MailingListProfileConfiguration, String, String, String, Map, ObjectReader)} but the body
+     * of the response is passed as is to the parser, allowing to read it incrementally.
+     * 
+     * @param resultParser the parser of the response or null if the response should be ignored
+     */
+    protected <T> T execStreaming(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        String email, String method, Map<String, Object> body, OVHResponseParser<T> resultParser)
+        throws NoSuchAlgorithmException, IOException, MailingListException
     {
         // Extract mailing list domain and name
-        Matcher matcher = MAIL_REGEX.matcher(mailingList);
-        matcher.find();
+        int index = mailingList.lastIndexOf('@');
+        if (index == -1) {
+            throw new MailingListException("Invalid mailing list address [" + mailingList + "]");
+        }
 
-        return exec(profileConfiguration, matcher.group(2), matcher.group(1), email, method, body);
+        return exec(profileConfiguration, mailingList.substring(index + 1), mailingList.substring(0, index), email,
+            method, body, resultParser);
     }
 
-    protected <T> T exec(Map<String, String> profileConfiguration, String listDomain, String listName, String email,
-        String method, Map<String, Object> bodyMap) throws NoSuchAlgorithmException, IOException, MailingListException
+    /**
+     * @param resultParser the parser of the response or null if the response should be ignored
+     */
+    protected <T> T exec(MailingListProfileConfiguration profileConfiguration, String listDomain, String listName,
+        String email, String method, Map<String, Object> bodyMap, OVHResponseParser<T> resultParser)
+        throws NoSuchAlgorithmException, IOException, MailingListException
     {
         // define base vars
         String appKey = profileConfiguration.get("appKey");
@@ -133,7 +350,7 @@ public abstract class AbstractOVHMailingListConnector implements MailingListConn
 
         String path = getPath(profileConfiguration, method, listDomain, listName, email);
 
-        String body = "";
+        byte[] body = null;
         StringBuilder urlBuilder = new StringBuilder(endpoint);
         urlBuilder.append(path);
         if (httpMethod.equals("GET")) {
@@ -150,81 +367,208 @@ public abstract class AbstractOVHMailingListConnector implements MailingListConn
         } else {
             // Put parameters in the body
             if (bodyMap != null && !bodyMap.isEmpty()) {
-                ObjectMapper mapper = new ObjectMapper();
-                body = mapper.writeValueAsString(bodyMap);
+                body = JSON_WRITER.writeValueAsBytes(bodyMap);
+            }
+        }
+
+        String url = urlBuilder.toString();
+
+        // Only the requests which can be safely repeated are retried after a server or network error (a throttled
+        // request was not processed so it can always be retried)
+        boolean idempotent = !httpMethod.equals("POST");
+        int maxRetries = profileConfiguration.getInt(PROPERTY_MAXRETRIES, DEFAULT_MAXRETRIES);
+
+        for (int attempt = 0;; ++attempt) {
+            MailingListOperationMetrics rateLimitMetrics = getMetrics(profileConfiguration, OPERATION_RATELIMIT);
+            long start = rateLimitMetrics.start();
+            try {
+                this.rateLimiter.acquire(profileConfiguration);
+
+                rateLimitMetrics.succeeded(start);
+            } catch (IOException e) {
+                rateLimitMetrics.failed(start, e);
+
+                throw e;
+            }
+
+            try {
+                T result = send(profileConfiguration, appKey, appSecret, consumerKey, httpMethod, url, body,
+                    resultParser);
+
+                this.rateLimiter.succeeded(profileConfiguration);
+
+                return result;
+            } catch (OVHResponseException e) {
+                if (e.getStatusCode() == STATUS_TOOMANYREQUESTS) {
+                    boolean limited = this.rateLimiter.throttled(profileConfiguration, e.getRetryAfter());
+
+                    if (attempt >= maxRetries) {
+                        throw e;
+                    }
+
+                    if (limited) {
+                        // The rate limiter takes care of waiting
+                        continue;
+                    }
+
+                    if (e.getRetryAfter() > 0) {
+                        // No rate limiter for this profile, wait as asked by OVH
+                        sleep(Math.min(e.getRetryAfter(), MAX_RETRYDELAY));
+
+                        continue;
+                    }
+                } else if (!idempotent || e.getStatusCode() < STATUS_SERVERERROR || attempt >= maxRetries) {
+                    throw e;
+                }
+            } catch (JsonProcessingException e) {
+                // Not a transient error
+                throw e;
+            } catch (IOException e) {
+                if (!idempotent || attempt >= maxRetries) {
+                    throw e;
+                }
             }
+
+            backoff(profileConfiguration, attempt);
         }
+    }
 
-        URL url = new URL(urlBuilder.toString());
+    private void backoff(MailingListProfileConfiguration profileConfiguration, int attempt)
+        throws InterruptedIOException
+    {
+        long baseDelay = profileConfiguration.getLong(PROPERTY_RETRYDELAY, DEFAULT_RETRYDELAY);
+        long delay = Math.min(baseDelay << Math.min(attempt, 16), MAX_RETRYDELAY);
+
+        // Add some jitter to avoid all the failed requests being retried at the same time
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+
+        sleep(delay);
+    }
+
+    private void sleep(long delay) throws InterruptedIOException
+    {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
 
+            throw new InterruptedIOException("Interrupted while waiting to retry the OVH request");
+        }
+    }
+
+    private <T> T send(MailingListProfileConfiguration profileConfiguration, String appKey, String appSecret,
+        String consumerKey, String httpMethod, String url, byte[] body, OVHResponseParser<T> resultParser)
+        throws NoSuchAlgorithmException, IOException, MailingListException
+    {
         // get timestamp from local system
         long timestamp = System.currentTimeMillis() / 1000;
 
         // build signature
-        String toSign = new StringBuilder(appSecret).append("+").append(consumerKey).append("+").append(httpMethod)
-            .append("+").append(url).append("+").append(body).append("+").append(timestamp).toString();
+        MailingListOperationMetrics signMetrics = getMetrics(profileConfiguration, OPERATION_SIGN);
+        long start = signMetrics.start();
+        String signature;
+        try {
+            signature = OVHSigner.sign(appSecret, consumerKey, httpMethod, url, body, timestamp);
+
+            signMetrics.succeeded(start);
+        } catch (RuntimeException e) {
+            signMetrics.failed(start, e);
 
-        String signature = new StringBuilder("$1$").append(toHashSHA1(toSign)).toString();
+            throw e;
+        }
 
         // set HTTP headers for authentication
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("X-Ovh-Application", appKey);
+        headers.put("X-Ovh-Consumer", consumerKey);
+        headers.put("X-Ovh-Signature", signature);
+        headers.put("X-Ovh-Timestamp", Long.toString(timestamp));
+
+        OVHTransport transport = getTransport(profileConfiguration);
+
+        MailingListOperationMetrics httpMetrics = getMetrics(profileConfiguration, OPERATION_HTTP);
+        start = httpMetrics.start();
+        OVHResponse response;
+        try {
+            response = transport.execute(profileConfiguration, httpMethod, url, headers, body);
+        } catch (IOException | RuntimeException e) {
+            httpMetrics.failed(start, e);
 
-        HttpURLConnection request = (HttpURLConnection) url.openConnection();
-        request.setRequestMethod(httpMethod);
-        request.setReadTimeout(30000);
-        request.setConnectTimeout(30000);
-        request.setRequestProperty("Content-Type", "application/json");
-        request.setRequestProperty("X-Ovh-Application", appKey);
-
-        request.setRequestProperty("X-Ovh-Consumer", consumerKey);
-        request.setRequestProperty("X-Ovh-Signature", signature);
-        request.setRequestProperty("X-Ovh-Timestamp", Long.toString(timestamp));
-
-        // Send body
-        if (body != null && !body.isEmpty()) {
-            request.setDoOutput(true);
-            DataOutputStream out = new DataOutputStream(request.getOutputStream());
-            out.writeBytes(body);
-            out.flush();
-            out.close();
-        }
-
-        BufferedReader in;
-        int responseCode = request.getResponseCode();
-        if (responseCode == 200) {
-            in = new BufferedReader(new InputStreamReader(request.getInputStream()));
-        } else {
-            in = new BufferedReader(new InputStreamReader(request.getErrorStream()));
+            throw e;
         }
 
-        String inputLine;
-        // build response
-        StringBuilder response = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+        try {
+            int responseCode = response.getStatusCode();
+
+            if (responseCode != 200) {
+                httpMetrics.failed(start, String.valueOf(responseCode));
+
+                throw new OVHResponseException(responseCode, readError(response.getBody()),
+                    parseRetryAfter(response.getHeader("Retry-After")));
+            }
+
+            httpMetrics.succeeded(start);
+
+            return resultParser != null ? parse(profileConfiguration, response, resultParser) : null;
+        } finally {
+            response.close();
         }
-        in.close();
+    }
+
+    private <T> T parse(MailingListProfileConfiguration profileConfiguration, OVHResponse response,
+        OVHResponseParser<T> resultParser) throws IOException, MailingListException
+    {
+        MailingListOperationMetrics parseMetrics = getMetrics(profileConfiguration, OPERATION_PARSE);
+        long start = parseMetrics.start();
+        try {
+            // Parse response body directly from the stream
+            T result = resultParser.parse(response.getBody());
 
-        String responseBody = response.toString();
+            parseMetrics.succeeded(start);
 
-        if (responseCode != 200) {
-            throw new IOException(responseBody);
+            return result;
+        } catch (IOException | MailingListException | RuntimeException e) {
+            parseMetrics.failed(start, e);
+
+            throw e;
         }
+    }
 
-        // Parse response body
-        ObjectMapper objectMapper = new ObjectMapper();
-        return (T) objectMapper.readValue(responseBody, Object.class);
+    private MailingListOperationMetrics getMetrics(MailingListProfileConfiguration profileConfiguration,
+        String operation)
+    {
+        return this.metrics.get(profileConfiguration.getProfile(), profileConfiguration.getConnector(), operation);
     }
 
-    private String toHashSHA1(String text) throws NoSuchAlgorithmException, UnsupportedEncodingException
+    private long parseRetryAfter(String value)
     {
-        MessageDigest md = MessageDigest.getInstance("SHA-1");
-        md.update(text.getBytes("iso-8859-1"), 0, text.length());
-        byte[] sha1hash = md.digest();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < sha1hash.length; i++) {
-            sb.append(Integer.toString((sha1hash[i] & 0xff) + 0x100, 16).substring(1));
+        if (value != null) {
+            try {
+                // Number of seconds
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // HTTP date
+                try {
+                    return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                        .toEpochMilli() - System.currentTimeMillis();
+                } catch (DateTimeParseException e2) {
+                    // Invalid value
+                }
+            }
         }
-        return sb.toString();
+
+        return -1;
     }
 
+    private String readError(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Default {@link OVHTransport} based on a pooled Apache HTTP client with keep-alive connections.
+ * <p>
+ * One client is created by profile and configured with the following properties:
+ * <ul>
+ * <li>{@code connectTimeout} and {@code readTimeout} in milliseconds (30000 by default)</li>
+ * <li>{@code maxConnections}: the size of the connection pool (20 by default)</li>
+ * <li>{@code idleTimeout}: the number of milliseconds after which an unused connection is closed (60000 by
+ * default)</li>
+ * </ul>
+ * When one of these properties changes, the previous client stops being used for new requests and is closed once the
+ * requests in progress are done.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component
+@Singleton
+public class HttpClientOVHTransport implements OVHTransport, Disposable
+{
+    private static final String PROPERTY_MAXCONNECTIONS = "maxConnections";
+
+    private static final int DEFAULT_MAXCONNECTIONS = 20;
+
+    private static final String PROPERTY_IDLETIMEOUT = "idleTimeout";
+
+    private static final long DEFAULT_IDLETIMEOUT = 60000;
+
+    private static final class Client
+    {
+        private volatile MailingListProfileConfiguration configuration;
+
+        private final String settings;
+
+        private final CloseableHttpClient httpClient;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private volatile boolean retired;
+
+        Client(MailingListProfileConfiguration configuration, String settings, CloseableHttpClient httpClient)
+        {
+            this.configuration = configuration;
+            this.settings = settings;
+            this.httpClient = httpClient;
+        }
+
+        boolean acquire()
+        {
+            this.inFlight.incrementAndGet();
+
+            if (this.retired) {
+                release();
+
+                return false;
+            }
+
+            return true;
+        }
+
+        void release()
+        {
+            if (this.inFlight.decrementAndGet() == 0 && this.retired) {
+                close();
+            }
+        }
+
+        /**
+         * Stop using the client and close it once the requests in progress are done.
+         */
+        void retire()
+        {
+            this.retired = true;
+
+            if (this.inFlight.get() == 0) {
+                close();
+            }
+        }
+
+        void close()
+        {
+            if (this.closed.compareAndSet(false, true)) {
+                try {
+                    this.httpClient.close();
+                } catch (IOException e) {
+                    // Nothing more we can do
+                }
+            }
+        }
+    }
+
+    private final ConcurrentMap<String, Client> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public OVHResponse execute(MailingListProfileConfiguration profileConfiguration, String method, String url,
+        Map<String, String> headers, byte[] body) throws IOException
+    {
+        RequestBuilder builder = RequestBuilder.create(method).setUri(url);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            builder.setEntity(new ByteArrayEntity(body));
+        }
+
+        Client client = acquireClient(profileConfiguration);
+
+        CloseableHttpResponse response;
+        try {
+            response = client.httpClient.execute(builder.build());
+        } catch (IOException | RuntimeException e) {
+            client.release();
+
+            throw e;
+        }
+
+        return new OVHResponse()
+        {
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public int getStatusCode()
+            {
+                return response.getStatusLine().getStatusCode();
+            }
+
+            @Override
+            public String getHeader(String name)
+            {
+                Header header = response.getFirstHeader(name);
+
+                return header != null ? header.getValue() : null;
+            }
+
+            @Override
+            public InputStream getBody() throws IOException
+            {
+                HttpEntity entity = response.getEntity();
+
+                return entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                if (!this.closed.compareAndSet(false, true)) {
+                    return;
+                }
+
+                // Make sure the whole response is consumed so that the connection can be reused
+                try {
+                    EntityUtils.consume(response.getEntity());
+                } finally {
+                    try {
+                        response.close();
+                    } finally {
+                        client.release();
+                    }
+                }
+            }
+        };
+    }
+
+    private Client acquireClient(MailingListProfileConfiguration profileConfiguration)
+    {
+        while (true) {
+            Client client = getClient(profileConfiguration);
+
+            // The client might have been retired in the meantime
+            if (client.acquire()) {
+                return client;
+            }
+        }
+    }
+
+    private Client getClient(MailingListProfileConfiguration profileConfiguration)
+    {
+        Client client = this.clients.get(profileConfiguration.getProfile());
+
+        if (client == null || client.configuration != profileConfiguration) {
+            synchronized (this.clients) {
+                client = this.clients.get(profileConfiguration.getProfile());
+
+                if (client == null || client.configuration != profileConfiguration) {
+                    String settings = getSettings(profileConfiguration);
+
+                    if (client != null && client.settings.equals(settings)) {
+                        // Only properties unrelated to the client changed
+                        client.configuration = profileConfiguration;
+                    } else {
+                        Client previousClient = client;
+
+                        client = new Client(profileConfiguration, settings, createClient(profileConfiguration));
+                        this.clients.put(profileConfiguration.getProfile(), client);
+
+                        // Other threads might still be using the previous client
+                        if (previousClient != null) {
+                            previousClient.retire();
+                        }
+                    }
+                }
+            }
+        }
+
+        return client;
+    }
+
+    private String getSettings(MailingListProfileConfiguration profileConfiguration)
+    {
+        return profileConfiguration.getInt(PROPERTY_MAXCONNECTIONS, DEFAULT_MAXCONNECTIONS) + ","
+            + profileConfiguration.getInt(PROPERTY_CONNECTTIMEOUT, DEFAULT_TIMEOUT) + ","
+            + profileConfiguration.getInt(PROPERTY_READTIMEOUT, DEFAULT_TIMEOUT) + ","
+            + profileConfiguration.getLong(PROPERTY_IDLETIMEOUT, DEFAULT_IDLETIMEOUT);
+    }
+
+    private CloseableHttpClient createClient(MailingListProfileConfiguration profileConfiguration)
+    {
+        int maxConnections = profileConfiguration.getInt(PROPERTY_MAXCONNECTIONS, DEFAULT_MAXCONNECTIONS);
+        int connectTimeout = profileConfiguration.getInt(PROPERTY_CONNECTTIMEOUT, DEFAULT_TIMEOUT);
+        int readTimeout = profileConfiguration.getInt(PROPERTY_READTIMEOUT, DEFAULT_TIMEOUT);
+        long idleTimeout = profileConfiguration.getLong(PROPERTY_IDLETIMEOUT, DEFAULT_IDLETIMEOUT);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeout)
+            .setConnectionRequestTimeout(connectTimeout).setSocketTimeout(readTimeout).build();
+
+        return HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig)
+            .disableCookieManagement().evictExpiredConnections()
+            .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS).build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        for (Client client : this.clients.values()) {
+            client.close();
+        }
+
+        this.clients.clear();
+    }
+}
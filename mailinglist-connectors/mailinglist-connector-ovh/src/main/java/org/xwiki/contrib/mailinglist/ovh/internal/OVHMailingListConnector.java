@@ -19,15 +19,24 @@
  */
 package org.xwiki.contrib.mailinglist.ovh.internal;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 
 /**
  * OVH mailing list based connector.
@@ -48,15 +57,62 @@ public class OVHMailingListConnector extends AbstractOVHMailingListConnector
     }
 
     @Override
-    public void add(Map<String, String> profileConfiguration, String mailingList, String email)
+    public void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
         throws MailingListException
     {
         Map<String, Object> body = Collections.singletonMap("email", email);
 
         try {
-            exec(profileConfiguration, mailingList, email, METHOD_ADD, body);
+            exec(profileConfiguration, mailingList, email, METHOD_ADD, body, null);
+        } catch (Exception e) {
+            throw toMailingListException("Failed add delete member", e);
+        }
+    }
+
+    @Override
+    public void forEachMember(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        Predicate<String> consumer) throws MailingListException
+    {
+        try {
+            execStreaming(profileConfiguration, mailingList, null, METHOD_GET, null, body -> {
+                readMembers(body, consumer);
+
+                return null;
+            });
+        } catch (MailingListException e) {
+            throw e;
         } catch (Exception e) {
-            throw new MailingListException("Failed add delete member", e);
+            throw toMailingListException("Failed to get members", e);
+        }
+    }
+
+    private void readMembers(InputStream body, Predicate<String> consumer) throws IOException, MailingListException
+    {
+        int count = 0;
+        try (JsonParser parser = JSON_MAPPER.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of members");
+            }
+
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw new JsonParseException(parser, "Unexpected token " + token + " in the members");
+                }
+
+                ++count;
+                if (!consumer.test(parser.getText())) {
+                    break;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // The request cannot be retried once members were passed to the consumer
+            if (count > 0) {
+                throw new MailingListTransientException("Failed to read the members after the first " + count, e);
+            }
+
+            throw e;
         }
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A precompiled OVH API path template where {@code {0}}, {@code {1}}, etc. are replaced by the provided arguments.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class OVHPathTemplate
+{
+    private final String template;
+
+    private final String[] literals;
+
+    private final int[] arguments;
+
+    private final int literalsLength;
+
+    /**
+     * @param template the template to compile
+     */
+    public OVHPathTemplate(String template)
+    {
+        this.template = template;
+
+        List<String> literalList = new ArrayList<>();
+        List<Integer> argumentList = new ArrayList<>();
+
+        int start = 0;
+        int length = 0;
+        for (int open = template.indexOf('{'); open != -1; open = template.indexOf('{', start)) {
+            int close = template.indexOf('}', open);
+            if (close == -1) {
+                break;
+            }
+
+            String literal = template.substring(start, open);
+            literalList.add(literal);
+            length += literal.length();
+            argumentList.add(Integer.valueOf(template.substring(open + 1, close)));
+
+            start = close + 1;
+        }
+
+        String literal = template.substring(start);
+        literalList.add(literal);
+        length += literal.length();
+
+        this.literals = literalList.toArray(new String[0]);
+        this.arguments = new int[argumentList.size()];
+        for (int i = 0; i < this.arguments.length; ++i) {
+            this.arguments[i] = argumentList.get(i);
+        }
+        this.literalsLength = length;
+    }
+
+    /**
+     * @param values the values to insert in the template (null values are inserted as {@code "null"} like
+     *            {@link java.text.MessageFormat} does)
+     * @return the resolved path
+     */
+    public String format(String... values)
+    {
+        int length = this.literalsLength;
+        for (int argument : this.arguments) {
+            String value = argument < values.length ? values[argument] : null;
+            length += value != null ? value.length() : 4;
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < this.arguments.length; ++i) {
+            builder.append(this.literals[i]);
+
+            int argument = this.arguments[i];
+            builder.append(argument < values.length ? values[argument] : null);
+        }
+        builder.append(this.literals[this.literals.length - 1]);
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.template;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Token bucket limiting the rate of the requests sent to OVH with the same application key.
+ * <p>
+ * The maximum rate is configured with the {@code mailinglist.<profile>.rateLimit} property (in requests per second,
+ * 20 by default, 0 to disable). The current rate is halved each time OVH answers with a 429 status (and requests are
+ * suspended until the end of the {@code Retry-After} delay), then slowly increased back to the maximum with each
+ * successful request.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component(roles = OVHRateLimiter.class)
+@Singleton
+public class OVHRateLimiter
+{
+    /**
+     * The maximum number of requests per second for a given application key.
+     */
+    public static final String PROPERTY_RATELIMIT = "rateLimit";
+
+    /**
+     * The default value of {@link #PROPERTY_RATELIMIT}, in requests per second.
+     */
+    public static final int DEFAULT_RATELIMIT = 20;
+
+    private static final double MIN_RATE = 0.1;
+
+    private static final double INCREASE_RATIO = 0.02;
+
+    private static final long DEFAULT_THROTTLE_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+    private static final class Bucket
+    {
+        private double maxRate;
+
+        private double rate;
+
+        private double tokens;
+
+        private long lastRefill = System.nanoTime();
+
+        private long blockedUntil = this.lastRefill;
+
+        Bucket(double maxRate)
+        {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.tokens = maxRate;
+        }
+
+        /**
+         * @return 0 if a token was taken, the number of nanoseconds to wait before trying again otherwise
+         */
+        synchronized long tryAcquire(double configuredRate)
+        {
+            if (configuredRate != this.maxRate) {
+                this.maxRate = configuredRate;
+                this.rate = Math.min(this.rate, configuredRate);
+            }
+
+            long now = System.nanoTime();
+            if (now - this.blockedUntil < 0) {
+                return this.blockedUntil - now;
+            }
+
+            // Allow bursts of one second worth of requests
+            this.tokens = Math.min(Math.max(1, this.rate), this.tokens + (now - this.lastRefill) * this.rate / 1e9);
+            this.lastRefill = now;
+
+            if (this.tokens >= 1) {
+                --this.tokens;
+
+                return 0;
+            }
+
+            return Math.max(1, (long) ((1 - this.tokens) * 1e9 / this.rate));
+        }
+
+        synchronized void succeeded()
+        {
+            this.rate = Math.min(this.maxRate, this.rate + this.maxRate * INCREASE_RATIO);
+        }
+
+        synchronized void throttled(long delay)
+        {
+            this.rate = Math.max(Math.min(MIN_RATE, this.maxRate), this.rate / 2);
+            this.tokens = Math.min(this.tokens, 0);
+
+            long until = System.nanoTime() + (delay > 0 ? delay : DEFAULT_THROTTLE_DELAY);
+            if (until - this.blockedUntil > 0) {
+                this.blockedUntil = until;
+            }
+        }
+    }
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Wait until a request can be sent.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    public void acquire(MailingListProfileConfiguration profileConfiguration) throws InterruptedIOException
+    {
+        int rateLimit = profileConfiguration.getInt(PROPERTY_RATELIMIT, DEFAULT_RATELIMIT);
+        if (rateLimit <= 0) {
+            return;
+        }
+
+        Bucket bucket = this.buckets.computeIfAbsent(getKey(profileConfiguration), k -> new Bucket(rateLimit));
+        for (long wait = bucket.tryAcquire(rateLimit); wait > 0; wait = bucket.tryAcquire(rateLimit)) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("Interrupted while waiting for the OVH rate limiter");
+            }
+        }
+    }
+
+    /**
+     * Indicate that a request was accepted by OVH.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     */
+    public void succeeded(MailingListProfileConfiguration profileConfiguration)
+    {
+        Bucket bucket = this.buckets.get(getKey(profileConfiguration));
+        if (bucket != null) {
+            bucket.succeeded();
+        }
+    }
+
+    /**
+     * Indicate that a request was rejected by OVH because of the rate limit.
+     * 
+     * @param profileConfiguration the configuration of the profile
+     * @param retryAfter the number of milliseconds to wait before sending new requests as indicated by OVH, or a
+     *            negative number if unknown
+     * @return true if the next {@link #acquire(MailingListProfileConfiguration)} waits as needed, false if the rate
+     *         limiter is disabled for the profile
+     */
+    public boolean throttled(MailingListProfileConfiguration profileConfiguration, long retryAfter)
+    {
+        Bucket bucket = this.buckets.get(getKey(profileConfiguration));
+        if (bucket != null) {
+            bucket.throttled(TimeUnit.MILLISECONDS.toNanos(retryAfter));
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private String getKey(MailingListProfileConfiguration profileConfiguration)
+    {
+        // The limits are applied by OVH per application
+        String appKey = profileConfiguration.get("appKey");
+
+        return appKey != null ? appKey : profileConfiguration.getProfile();
+    }
+}
@@ -22,8 +22,11 @@ package org.xwiki.contrib.mailinglist.ovh.internal;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.inject.Named;
@@ -31,6 +34,10 @@ import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListPartialResultException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * OVH mailing list based connector.
@@ -44,6 +51,29 @@ public class OVHRedirectMailingListConnector extends AbstractOVHMailingListConne
 {
     public static final String METHOD_GETOBJECT = "getobject";
 
+    private static final ObjectReader REDIRECTION_READER = JSON_MAPPER.readerFor(OVHRedirection.class);
+
+    /**
+     * The maximum number of redirection ids to remember, the least recently used being forgotten first.
+     */
+    private static final int REDIRECTIONIDS_SIZE = 10000;
+
+    /**
+     * Index of the redirection ids found while listing members (key is profile, from and to), used to avoid an extra
+     * lookup request when deleting a redirection. A forgotten id is just looked up again.
+     */
+    private final Map<String, String> redirectionIds =
+        Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+            {
+                return size() > REDIRECTIONIDS_SIZE;
+            }
+        });
+
     /**
      * Default constructor.
      */
@@ -52,11 +82,11 @@ public class OVHRedirectMailingListConnector extends AbstractOVHMailingListConne
         super("/email/domain/{0}/redirection", "/email/domain/{0}/redirection/{2}");
 
         this.methods.put(METHOD_GETOBJECT, "GET");
-        this.paths.put(METHOD_GETOBJECT, "/email/domain/{0}/redirection/{2}");
+        this.paths.put(METHOD_GETOBJECT, this.paths.get(METHOD_DELETE));
     }
 
     @Override
-    public void add(Map<String, String> profileConfiguration, String mailingList, String email)
+    public void add(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
         throws MailingListException
     {
         Map<String, Object> body = new HashMap<>();
@@ -65,39 +95,70 @@ public class OVHRedirectMailingListConnector extends AbstractOVHMailingListConne
         body.put("to", email);
 
         try {
-            exec(profileConfiguration, mailingList, email, METHOD_ADD, body);
+            // The response is the task creating the redirection, not the redirection itself so there is no way to
+            // know its id yet
+            exec(profileConfiguration, mailingList, email, METHOD_ADD, body, null);
         } catch (Exception e) {
-            throw new MailingListException("Failed add member", e);
+            throw toMailingListException("Failed add member", e);
         }
     }
 
     @Override
-    protected String getPath(Map<String, String> profileConfiguration, String method, String domain, String name,
-        String email) throws NoSuchAlgorithmException, IOException, MailingListException
+    public void delete(MailingListProfileConfiguration profileConfiguration, String mailingList, String email)
+        throws MailingListException
     {
-        if (method.equals(METHOD_DELETE)) {
-            // Find the id of the redirect (needed by delete)
-            String from = name + '@' + domain;
-            Map<String, Object> body = new HashMap<>();
-            body.put("from", from);
-            body.put("to", email);
-            List<String> result = exec(profileConfiguration, domain, name, email, METHOD_GET, body);
-
-            if (result.isEmpty()) {
-                throw new MailingListException("No redirection exist from [" + from + "] to [" + email + "]");
+        String key = getIndexKey(profileConfiguration, mailingList, email);
+
+        try {
+            String id = this.redirectionIds.get(key);
+
+            if (id != null) {
+                try {
+                    exec(profileConfiguration, mailingList, id, METHOD_DELETE, null, null);
+
+                    this.redirectionIds.remove(key, id);
+
+                    return;
+                } catch (OVHResponseException e) {
+                    if (e.getStatusCode() != 404) {
+                        throw e;
+                    }
+
+                    // The redirection was removed or recreated behind our back
+                    this.redirectionIds.remove(key, id);
+                }
             }
 
-            String id = result.get(0);
+            exec(profileConfiguration, mailingList, findRedirectionId(profileConfiguration, mailingList, email),
+                METHOD_DELETE, null, null);
+        } catch (Exception e) {
+            throw toMailingListException("Failed to delete member", e);
+        }
+    }
+
+    private String findRedirectionId(MailingListProfileConfiguration profileConfiguration, String mailingList,
+        String email) throws NoSuchAlgorithmException, IOException, MailingListException
+    {
+        Map<String, Object> body = new HashMap<>();
+        body.put("from", mailingList);
+        body.put("to", email);
+        List<String> result = exec(profileConfiguration, mailingList, email, METHOD_GET, body, STRING_LIST_READER);
 
-            // Generate the path
-            return super.getPath(profileConfiguration, method, domain, name, id);
-        } else {
-            return super.getPath(profileConfiguration, method, domain, name, email);
+        if (result.isEmpty()) {
+            throw new MailingListException("No redirection exist from [" + mailingList + "] to [" + email + "]");
         }
+
+        return result.get(0);
+    }
+
+    private String getIndexKey(MailingListProfileConfiguration profileConfiguration, String from, String to)
+    {
+        return profileConfiguration.getProfile() + '\n' + from.toLowerCase(Locale.ROOT) + '\n'
+            + to.toLowerCase(Locale.ROOT);
     }
 
     @Override
-    public List<String> getMembers(Map<String, String> profileConfiguration, String mailingList)
+    public List<String> getMembers(MailingListProfileConfiguration profileConfiguration, String mailingList)
         throws MailingListException
     {
         Map<String, Object> body = new HashMap<>();
@@ -105,17 +166,40 @@ public class OVHRedirectMailingListConnector extends AbstractOVHMailingListConne
 
         List<String> ids = super.getMembers(profileConfiguration, mailingList, body);
 
+        // Resolve the redirections concurrently
+        String[] emails = new String[ids.size()];
+        MailingListException[] failures = new MailingListException[ids.size()];
+        this.executor.forEach(ids, profileConfiguration.getInt(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY),
+            (index, id) -> {
+                try {
+                    OVHRedirection redirection =
+                        exec(profileConfiguration, mailingList, id, METHOD_GETOBJECT, body, REDIRECTION_READER);
+
+                    String to = redirection.getTo();
+                    emails[index] = to;
+
+                    if (to != null) {
+                        this.redirectionIds.put(getIndexKey(profileConfiguration, mailingList, to), id);
+                    }
+                } catch (Exception e) {
+                    failures[index] = toMailingListException("Failed to get member email from id [" + id + "]", e);
+                }
+            });
+
         List<String> members = new ArrayList<>(ids.size());
-        for (String id : ids) {
-            try {
-                Map<String, String> redirectionObject =
-                    exec(profileConfiguration, mailingList, id, METHOD_GETOBJECT, body);
-
-                members.add(redirectionObject.get("to"));
-            } catch (Exception e) {
-                throw new MailingListException("Failed to get member email from id", e);
+        Map<String, MailingListException> failedIds = new LinkedHashMap<>();
+        for (int i = 0; i < emails.length; ++i) {
+            if (failures[i] != null) {
+                failedIds.put(ids.get(i), failures[i]);
+            } else {
+                members.add(emails[i]);
             }
+        }
 
+        if (!failedIds.isEmpty()) {
+            throw new MailingListPartialResultException(
+                "Failed to get the email of " + failedIds.size() + " redirections out of " + ids.size(), members,
+                failedIds);
         }
 
         return members;
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A redirection as returned by the OVH API.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OVHRedirection
+{
+    private String id;
+
+    private String from;
+
+    private String to;
+
+    /**
+     * @return the identifier of the redirection
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @param id the identifier of the redirection
+     */
+    public void setId(String id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return the source address
+     */
+    public String getFrom()
+    {
+        return this.from;
+    }
+
+    /**
+     * @param from the source address
+     */
+    public void setFrom(String from)
+    {
+        this.from = from;
+    }
+
+    /**
+     * @return the target address
+     */
+    public String getTo()
+    {
+        return this.to;
+    }
+
+    /**
+     * @param to the target address
+     */
+    public void setTo(String to)
+    {
+        this.to = to;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response received from the OVH API. Closing it releases the underlying connection.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public interface OVHResponse extends Closeable
+{
+    /**
+     * @return the HTTP status of the response
+     */
+    int getStatusCode();
+
+    /**
+     * @param name the name of the header
+     * @return the value of the header or null if it's not set
+     */
+    String getHeader(String name);
+
+    /**
+     * @return the body of the response (which might be the error description)
+     * @throws IOException when failing to access the body
+     */
+    InputStream getBody() throws IOException;
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.IOException;
+
+/**
+ * Thrown when OVH API answers with an unexpected HTTP status.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public class OVHResponseException extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    private final long retryAfter;
+
+    /**
+     * @param statusCode the HTTP status of the response
+     * @param responseBody the body of the response
+     */
+    public OVHResponseException(int statusCode, String responseBody)
+    {
+        this(statusCode, responseBody, -1);
+    }
+
+    /**
+     * @param statusCode the HTTP status of the response
+     * @param responseBody the body of the response
+     * @param retryAfter the number of milliseconds to wait before retrying as indicated by the {@code Retry-After}
+     *            header, or a negative number if not provided
+     */
+    public OVHResponseException(int statusCode, String responseBody, long retryAfter)
+    {
+        super(responseBody);
+
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the HTTP status of the response
+     */
+    public int getStatusCode()
+    {
+        return this.statusCode;
+    }
+
+    /**
+     * @return the number of milliseconds to wait before retrying as indicated by the {@code Retry-After} header, or a
+     *         negative number if not provided
+     */
+    public long getRetryAfter()
+    {
+        return this.retryAfter;
+    }
+}
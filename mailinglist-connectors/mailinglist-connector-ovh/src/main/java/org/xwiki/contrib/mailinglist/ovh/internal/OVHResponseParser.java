@@ -0,0 +1,45 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xwiki.contrib.mailinglist.MailingListException;
+
+/**
+ * Read the body of a successful OVH API response.
+ * 
+ * @param <T> the type of the result
+ * @version $Id$
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface OVHResponseParser<T>
+{
+    /**
+     * @param body the body of the response, closed by the caller
+     * @return the result
+     * @throws IOException when failing to read the response (retried when transient, see
+     *             {@link AbstractOVHMailingListConnector})
+     * @throws MailingListException when failing to read the response (never retried)
+     */
+    T parse(InputStream body) throws IOException, MailingListException;
+}
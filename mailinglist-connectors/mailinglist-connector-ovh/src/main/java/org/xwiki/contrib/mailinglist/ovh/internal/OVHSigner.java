@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Compute the {@code X-Ovh-Signature} header value of a request.
+ * <p>
+ * The signature is {@code "$1$" + SHA1_HEX(appSecret+consumerKey+method+url+body+timestamp)} with strings encoded
+ * in ISO-8859-1. To limit the allocations on each request the digest and the buffers are reused per thread and the
+ * parts are fed to the digest without being concatenated first.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+public final class OVHSigner
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final String PREFIX = "$1$";
+
+    private static final byte SEPARATOR = '+';
+
+    private static final ThreadLocal<OVHSigner> SIGNERS = new ThreadLocal<OVHSigner>()
+    {
+        @Override
+        protected OVHSigner initialValue()
+        {
+            try {
+                return new OVHSigner(MessageDigest.getInstance("SHA-1"));
+            } catch (NoSuchAlgorithmException e) {
+                // SHA-1 is required to be supported by all Java platforms
+                throw new IllegalStateException("SHA-1 is not supported", e);
+            }
+        }
+    };
+
+    private final MessageDigest digest;
+
+    private byte[] buffer = new byte[256];
+
+    private final char[] signature = new char[PREFIX.length() + 40];
+
+    private OVHSigner(MessageDigest digest)
+    {
+        this.digest = digest;
+
+        PREFIX.getChars(0, PREFIX.length(), this.signature, 0);
+    }
+
+    /**
+     * @param appSecret the application secret
+     * @param consumerKey the consumer key
+     * @param method the HTTP method
+     * @param url the full URL of the request
+     * @param body the body of the request or null if there is none
+     * @param timestamp the timestamp of the request in seconds
+     * @return the signature
+     */
+    public static String sign(String appSecret, String consumerKey, String method, String url, byte[] body,
+        long timestamp)
+    {
+        return SIGNERS.get().compute(appSecret, consumerKey, method, url, body, timestamp);
+    }
+
+    private String compute(String appSecret, String consumerKey, String method, String url, byte[] body,
+        long timestamp)
+    {
+        this.digest.reset();
+
+        update(appSecret);
+        this.digest.update(SEPARATOR);
+        update(consumerKey);
+        this.digest.update(SEPARATOR);
+        update(method);
+        this.digest.update(SEPARATOR);
+        update(url);
+        this.digest.update(SEPARATOR);
+        if (body != null) {
+            this.digest.update(body);
+        }
+        this.digest.update(SEPARATOR);
+        updateTimestamp(timestamp);
+
+        byte[] hash = this.digest.digest();
+
+        int index = PREFIX.length();
+        for (byte b : hash) {
+            this.signature[index++] = HEX[(b >> 4) & 0x0f];
+            this.signature[index++] = HEX[b & 0x0f];
+        }
+
+        return new String(this.signature);
+    }
+
+    private void update(String str)
+    {
+        String value = str != null ? str : "null";
+
+        int length = value.length();
+        if (this.buffer.length < length) {
+            this.buffer = new byte[Math.max(length, this.buffer.length * 2)];
+        }
+
+        // ISO-8859-1 encoding
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            this.buffer[i] = c <= 0xff ? (byte) c : (byte) '?';
+        }
+
+        this.digest.update(this.buffer, 0, length);
+    }
+
+    private void updateTimestamp(long timestamp)
+    {
+        int index = this.buffer.length;
+        long value = timestamp;
+        do {
+            this.buffer[--index] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+
+        this.digest.update(this.buffer, index, this.buffer.length - index);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * Send HTTP requests to the OVH API. The implementation to use can be chosen with the
+ * {@code mailinglist.<profile>.transport} property.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Role
+public interface OVHTransport
+{
+    /**
+     * The connection timeout in milliseconds.
+     */
+    String PROPERTY_CONNECTTIMEOUT = "connectTimeout";
+
+    /**
+     * The read timeout in milliseconds.
+     */
+    String PROPERTY_READTIMEOUT = "readTimeout";
+
+    /**
+     * The default connection and read timeout in milliseconds.
+     */
+    int DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * @param profileConfiguration the configuration of the profile
+     * @param method the HTTP method
+     * @param url the URL to request
+     * @param headers the HTTP headers to send
+     * @param body the body of the request or null if there is none
+     * @return the response, to be closed by the caller
+     * @throws IOException when failing to send the request
+     */
+    OVHResponse execute(MailingListProfileConfiguration profileConfiguration, String method, String url,
+        Map<String, String> headers, byte[] body) throws IOException;
+}
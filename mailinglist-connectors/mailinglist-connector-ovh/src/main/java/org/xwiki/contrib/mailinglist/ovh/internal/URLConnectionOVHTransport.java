@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+
+/**
+ * {@link OVHTransport} based on the JDK {@link HttpURLConnection}.
+ * 
+ * @version $Id$
+ * @since 1.1
+ */
+@Component
+@Singleton
+@Named(URLConnectionOVHTransport.HINT)
+public class URLConnectionOVHTransport implements OVHTransport
+{
+    /**
+     * The hint of the component.
+     */
+    public static final String HINT = "urlconnection";
+
+    @Override
+    public OVHResponse execute(MailingListProfileConfiguration profileConfiguration, String method, String url,
+        Map<String, String> headers, byte[] body) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(profileConfiguration.getInt(PROPERTY_CONNECTTIMEOUT, DEFAULT_TIMEOUT));
+        connection.setReadTimeout(profileConfiguration.getInt(PROPERTY_READTIMEOUT, DEFAULT_TIMEOUT));
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        // Send body
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        int statusCode = connection.getResponseCode();
+
+        InputStream stream = statusCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+        // Remember if the stream was already closed by the caller (the JDK stream fails when read after close)
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream responseBody =
+            new FilterInputStream(stream != null ? stream : new ByteArrayInputStream(new byte[0]))
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    if (closed.compareAndSet(false, true)) {
+                        super.close();
+                    }
+                }
+            };
+
+        return new OVHResponse()
+        {
+            @Override
+            public int getStatusCode()
+            {
+                return statusCode;
+            }
+
+            @Override
+            public String getHeader(String name)
+            {
+                return connection.getHeaderField(name);
+            }
+
+            @Override
+            public InputStream getBody()
+            {
+                return responseBody;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                if (closed.get()) {
+                    return;
+                }
+
+                // Drain the stream so that the JDK can put the connection back in its keep-alive cache
+                try (InputStream in = responseBody) {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) != -1) {
+                        // Skip
+                    }
+                }
+            }
+        };
+    }
+}
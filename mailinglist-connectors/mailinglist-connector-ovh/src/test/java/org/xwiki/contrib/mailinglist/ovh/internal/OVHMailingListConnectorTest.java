@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListThrottledException;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListMetricsRegistry;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListTaskExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListMetrics;
+import org.xwiki.contrib.mailinglist.ovh.simulator.OVHSimulator;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link OVHMailingListConnector} against an {@link OVHSimulator}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({OVHMailingListConnector.class, OVHRateLimiter.class, HttpClientOVHTransport.class,
+    DefaultMailingListTaskExecutor.class, MailingListExecutor.class, DefaultMailingListMetricsRegistry.class,
+    MailingListMetrics.class})
+public class OVHMailingListConnectorTest
+{
+    private static final String DOMAIN = "example.com";
+
+    private static final String NAME = "list";
+
+    private static final String LIST = NAME + '@' + DOMAIN;
+
+    private static final String MEMBER = "member@example.org";
+
+    private static final String APPKEY = "key";
+
+    private static final String APPSECRET = "secret";
+
+    private static final String CONSUMERKEY = "consumer";
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private OVHSimulator simulator;
+
+    private MailingListConnector connector;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource();
+        this.componentManager.registerMockComponent(Environment.class);
+
+        this.simulator = new OVHSimulator().addApplication(APPKEY, APPSECRET, CONSUMERKEY);
+        this.simulator.getStore().addSubscribers(DOMAIN, NAME, Arrays.asList(MEMBER));
+
+        this.connector = this.componentManager.getInstance(MailingListConnector.class, "ovh");
+    }
+
+    @After
+    public void after()
+    {
+        this.simulator.close();
+    }
+
+    private MailingListProfileConfiguration getProfileConfiguration(String... properties)
+    {
+        Map<String, String> map = new HashMap<>();
+        map.put(MailingListProfileConfiguration.PROPERTY_CONNECTOR, "ovh");
+        map.put("endpoint", this.simulator.getEndpoint());
+        map.put("appKey", APPKEY);
+        map.put("appSecret", APPSECRET);
+        map.put("consumerKey", CONSUMERKEY);
+        map.put(AbstractOVHMailingListConnector.PROPERTY_RETRYDELAY, "1");
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put(properties[i], properties[i + 1]);
+        }
+
+        return new MailingListProfileConfiguration("test", map);
+    }
+
+    @Test
+    public void signedRequests() throws Exception
+    {
+        MailingListProfileConfiguration profileConfiguration = getProfileConfiguration();
+
+        this.connector.add(profileConfiguration, LIST, "new@example.org");
+
+        assertEquals(Arrays.asList(MEMBER, "new@example.org"), this.connector.getMembers(profileConfiguration, LIST));
+
+        this.connector.delete(profileConfiguration, LIST, MEMBER);
+
+        assertEquals(Arrays.asList("new@example.org"), this.simulator.getStore().getSubscribers(DOMAIN, NAME));
+        assertEquals(0, this.simulator.getResponseCount(403));
+    }
+
+    @Test
+    public void invalidSignature()
+    {
+        MailingListProfileConfiguration profileConfiguration = getProfileConfiguration("appSecret", "wrong");
+
+        try {
+            this.connector.getMembers(profileConfiguration, LIST);
+            fail("Should have failed");
+        } catch (MailingListException e) {
+            // Client errors are permanent and never retried
+            assertFalse(e instanceof MailingListTransientException);
+        }
+        assertEquals(1, this.simulator.getRequestCount());
+        assertEquals(1, this.simulator.getResponseCount(403));
+    }
+
+    @Test
+    public void throttledRequestsAreRetriedAfterRetryAfter() throws Exception
+    {
+        MailingListProfileConfiguration profileConfiguration = getProfileConfiguration();
+        this.simulator.setRateLimit(1);
+
+        // At least two of the requests are sent during the same second
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(Arrays.asList(MEMBER), this.connector.getMembers(profileConfiguration, LIST));
+        }
+        long duration = System.nanoTime() - start;
+
+        assertTrue(this.simulator.getResponseCount(429) > 0);
+        // The simulator asks to wait one second
+        assertTrue("Retried after " + duration + "ns", duration >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void throttledRequestsAreRetriedAfterRetryAfterWithoutRateLimiter() throws Exception
+    {
+        MailingListProfileConfiguration profileConfiguration =
+            getProfileConfiguration(OVHRateLimiter.PROPERTY_RATELIMIT, "0");
+        this.simulator.setRateLimit(1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(Arrays.asList(MEMBER), this.connector.getMembers(profileConfiguration, LIST));
+        }
+        long duration = System.nanoTime() - start;
+
+        // Not retried right away
+        assertTrue(this.simulator.getResponseCount(429) > 0);
+        assertTrue(this.simulator.getResponseCount(429) + " rejected", this.simulator.getResponseCount(429) <= 2);
+        assertTrue("Retried after " + duration + "ns", duration >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void throttledRequestsFailWhenRetriesAreExhausted()
+    {
+        MailingListProfileConfiguration profileConfiguration =
+            getProfileConfiguration(AbstractOVHMailingListConnector.PROPERTY_MAXRETRIES, "0");
+        this.simulator.setRateLimit(1);
+
+        MailingListException exception = null;
+        for (int i = 0; i < 3 && exception == null; ++i) {
+            try {
+                this.connector.getMembers(profileConfiguration, LIST);
+            } catch (MailingListException e) {
+                exception = e;
+            }
+        }
+
+        assertNotNull(exception);
+        assertTrue(exception instanceof MailingListThrottledException);
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws Exception
+    {
+        this.simulator.failNext(2, 503);
+
+        assertEquals(Arrays.asList(MEMBER), this.connector.getMembers(getProfileConfiguration(), LIST));
+
+        assertEquals(2, this.simulator.getResponseCount(503));
+        assertEquals(3, this.simulator.getRequestCount());
+    }
+
+    @Test
+    public void serverErrorsFailWhenRetriesAreExhausted() throws Exception
+    {
+        MailingListProfileConfiguration profileConfiguration =
+            getProfileConfiguration(AbstractOVHMailingListConnector.PROPERTY_MAXRETRIES, "2");
+        this.simulator.failNext(10, 500);
+
+        try {
+            this.connector.getMembers(profileConfiguration, LIST);
+            fail("Should have failed");
+        } catch (MailingListTransientException e) {
+            // Expected
+        }
+
+        assertEquals(3, this.simulator.getRequestCount());
+    }
+
+    @Test
+    public void serverErrorsAreNotRetriedForAdd() throws Exception
+    {
+        this.simulator.failNext(1, 500);
+
+        // The member may have been added so the request is not sent again
+        try {
+            this.connector.add(getProfileConfiguration(), LIST, "new@example.org");
+            fail("Should have failed");
+        } catch (MailingListTransientException e) {
+            // Expected
+        }
+
+        assertEquals(1, this.simulator.getRequestCount());
+        assertEquals(Arrays.asList(MEMBER), this.simulator.getStore().getSubscribers(DOMAIN, NAME));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.mailinglist.ovh.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.mailinglist.MailingListConnector;
+import org.xwiki.contrib.mailinglist.MailingListException;
+import org.xwiki.contrib.mailinglist.MailingListProfileConfiguration;
+import org.xwiki.contrib.mailinglist.MailingListTransientException;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListMetricsRegistry;
+import org.xwiki.contrib.mailinglist.interval.DefaultMailingListTaskExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListExecutor;
+import org.xwiki.contrib.mailinglist.interval.MailingListMetrics;
+import org.xwiki.contrib.mailinglist.ovh.simulator.OVHSimulator;
+import org.xwiki.contrib.mailinglist.ovh.simulator.OVHSimulatorStore;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link OVHRedirectMailingListConnector} against an {@link OVHSimulator}.
+ * 
+ * @version $Id$
+ */
+@ComponentList({OVHRedirectMailingListConnector.class, OVHRateLimiter.class, HttpClientOVHTransport.class,
+    DefaultMailingListTaskExecutor.class, MailingListExecutor.class, DefaultMailingListMetricsRegistry.class,
+    MailingListMetrics.class})
+public class OVHRedirectMailingListConnectorTest
+{
+    private static final String DOMAIN = "example.com";
+
+    private static final String LIST = "list@" + DOMAIN;
+
+    private static final String MEMBER = "member@example.org";
+
+    private static final String APPKEY = "key";
+
+    private static final String APPSECRET = "secret";
+
+    private static final String CONSUMERKEY = "consumer";
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private OVHSimulator simulator;
+
+    private OVHSimulatorStore store;
+
+    private MailingListConnector connector;
+
+    private MailingListProfileConfiguration profileConfiguration;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource();
+        this.componentManager.registerMockComponent(Environment.class);
+
+        this.simulator = new OVHSimulator().addApplication(APPKEY, APPSECRET, CONSUMERKEY);
+        this.store = this.simulator.getStore();
+        this.store.addRedirection(DOMAIN, LIST, MEMBER);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(MailingListProfileConfiguration.PROPERTY_CONNECTOR, "ovh-redirect");
+        properties.put("endpoint", this.simulator.getEndpoint());
+        properties.put("appKey", APPKEY);
+        properties.put("appSecret", APPSECRET);
+        properties.put("consumerKey", CONSUMERKEY);
+        properties.put(AbstractOVHMailingListConnector.PROPERTY_RETRYDELAY, "1");
+        this.profileConfiguration = new MailingListProfileConfiguration("test", properties);
+
+        this.connector = this.componentManager.getInstance(MailingListConnector.class, "ovh-redirect");
+    }
+
+    @After
+    public void after()
+    {
+        this.simulator.close();
+    }
+
+    @Test
+    public void getMembersResolvesRedirections() throws Exception
+    {
+        this.connector.add(this.profileConfiguration, LIST, "new@example.org");
+
+        assertEquals(Arrays.asList(MEMBER, "new@example.org"),
+            this.connector.getMembers(this.profileConfiguration, LIST));
+    }
+
+    @Test
+    public void deleteUsesTheKnownRedirectionId() throws Exception
+    {
+        this.connector.getMembers(this.profileConfiguration, LIST);
+        this.simulator.resetStatistics();
+
+        this.connector.delete(this.profileConfiguration, LIST, MEMBER);
+
+        // No lookup request
+        assertEquals(1, this.simulator.getRequestCount());
+        assertEquals(Collections.emptyList(), this.store.findRedirections(DOMAIN, LIST, MEMBER));
+    }
+
+    @Test
+    public void deleteLooksUpTheRedirectionAgainWhenTheKnownIdIsGone() throws Exception
+    {
+        this.connector.getMembers(this.profileConfiguration, LIST);
+
+        // Recreate the redirection behind the connector's back
+        this.store.removeRedirection(DOMAIN, this.store.findRedirections(DOMAIN, LIST, MEMBER).get(0));
+        this.store.addRedirection(DOMAIN, LIST, MEMBER);
+        this.simulator.resetStatistics();
+
+        this.connector.delete(this.profileConfiguration, LIST, MEMBER);
+
+        assertEquals(1, this.simulator.getResponseCount(404));
+        assertEquals(Collections.emptyList(), this.store.findRedirections(DOMAIN, LIST, MEMBER));
+    }
+
+    @Test
+    public void deleteUnknownMember()
+    {
+        try {
+            this.connector.delete(this.profileConfiguration, LIST, "unknown@example.org");
+            fail("Should have failed");
+        } catch (MailingListException e) {
+            assertFalse(e instanceof MailingListTransientException);
+        }
+    }
+
+    @Test
+    public void getMembersRetriesServerErrors() throws Exception
+    {
+        this.simulator.failNext(1, 502);
+
+        assertEquals(Arrays.asList(MEMBER), this.connector.getMembers(this.profileConfiguration, LIST));
+        assertEquals(1, this.simulator.getResponseCount(502));
+    }
+}